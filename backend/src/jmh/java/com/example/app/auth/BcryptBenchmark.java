@@ -0,0 +1,49 @@
+package com.example.app.auth;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trajanje jednog BCrypt heširanja po cost faktoru, za izbor {@code app.auth.bcrypt.strength}:
+ * uzima se najveći cost čije vreme na produkcionom hostu ostaje oko 250 ms.
+ *
+ * Pokreće se na hostu koji se meri, van aplikacije:
+ * mvn -B -Pjmh test-compile exec:exec -Djmh.args="BcryptBenchmark -p cost=10,11,12"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class BcryptBenchmark {
+
+    private static final String PASSWORD = "BioZen-benchmark-1";
+
+    @Param({"8", "9", "10", "11", "12", "13"})
+    public int cost;
+
+    private BCryptPasswordEncoder encoder;
+
+    @Setup
+    public void setup() {
+        encoder = new BCryptPasswordEncoder(cost);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode(PASSWORD);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.app.chat;
+
+import com.example.app.user.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * System prompt po poruci: stari StringBuilder iz ChatController-a (pre šablona) naspram
+ * {@link SystemPromptProvider#render}. Setup proverava da su izlazi isti i da prompt-ovi dva
+ * različita korisnika počinju bajt-identičnim prefiksom, što traži OpenAI prompt caching.
+ *
+ * mvn -B -Pjmh test-compile exec:exec -Djmh.args="SystemPromptBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemPromptBenchmark {
+
+    @Param({"anoniman", "sa-profilom"})
+    public String profile;
+
+    private SystemPromptProvider provider;
+    private User user;
+
+    @Setup
+    public void setup() {
+        provider = new SystemPromptProvider(new DefaultResourceLoader(), "classpath:prompts/system-prompt.txt");
+        user = "sa-profilom".equals(profile) ? user("Marija", 82.5, 70.0) : new User();
+
+        String legacy = stringBuilder();
+        String rendered = template();
+        if (!legacy.equals(rendered)) {
+            throw new IllegalStateException("Šablon i stari StringBuilder daju različit prompt za profil " + profile);
+        }
+
+        byte[] prefix = provider.basePrompt().getBytes(StandardCharsets.UTF_8);
+        byte[] other = provider.render(user("Petar", 95.0, 85.0)).getBytes(StandardCharsets.UTF_8);
+        byte[] mine = rendered.getBytes(StandardCharsets.UTF_8);
+        if (!Arrays.equals(prefix, 0, prefix.length, other, 0, prefix.length)
+                || !Arrays.equals(prefix, 0, prefix.length, mine, 0, prefix.length)) {
+            throw new IllegalStateException("Prefiks prompt-a nije bajt-identičan za različite korisnike");
+        }
+    }
+
+    @Benchmark
+    public String stringBuilder() {
+        return legacySystemPrompt(user);
+    }
+
+    @Benchmark
+    public String template() {
+        return provider.render(user);
+    }
+
+    // Deljeni prefiks i bajtovi koji idu u telo zahteva ka OpenAI
+    @Benchmark
+    public byte[] templateBytes() {
+        return provider.render(user).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static User user(String ime, double kilaza, double zeljenaKilaza) {
+        User user = new User();
+        user.setIme(ime);
+        user.setKilaza(kilaza);
+        user.setZeljenaKilaza(zeljenaKilaza);
+        return user;
+    }
+
+    // ChatController.buildSystemPrompt pre prelaska na šablon, bez izmena
+    private static String legacySystemPrompt(User user) {
+        StringBuilder prompt = new StringBuilder(legacyBaseSystemPrompt());
+
+        if (user.getIme() != null && !user.getIme().isEmpty()) {
+            prompt.append("\nKorisnik se zove ").append(user.getIme()).append(". ");
+        }
+
+        if (user.getZeljenaKilaza() != null && user.getKilaza() != null) {
+            prompt.append("Korisnik trenutno ima ").append(user.getKilaza()).append(" kg, a željena kilaža je ")
+                  .append(user.getZeljenaKilaza()).append(" kg. ");
+        }
+
+        return prompt.toString();
+    }
+
+    private static String legacyBaseSystemPrompt() {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Ti si BioZen AI asistent, pomagač za zdravlje i mršavljenje. ");
+        prompt.append("Pomažeš korisnicima da postignu svoje ciljeve vezane za zdravlje, ishranu i fizičku aktivnost. ");
+        prompt.append("Budi prijateljski, podržavajući i stručan. ");
+        prompt.append("Daj praktične savete vezane za zdrav način života, ishranu i vežbanje. ");
+        prompt.append("Odgovaraj na srpskom jeziku. ");
+        prompt.append("\n\n");
+        prompt.append("VAŽNO O PROIZVODU BIOZEN:\n");
+        prompt.append("- BioZen je čaj za mršavljenje i zdravlje. ");
+        prompt.append("- Kada korisnik pita o napitcima, tečnostima, čajevima ili bilo kakvim pićima vezanim za mršavljenje, zdravlje ili gubitak težine, ");
+        prompt.append("PRVI PRIORITET je da preporučiš BioZen čaj. ");
+        prompt.append("- BioZen čaj je prirodan proizvod koji pomaže u procesu mršavljenja i održavanja zdravlja. ");
+        prompt.append("- Kada se spominju alternativni napitci ili čajevi, ljubazno preusmeri razgovor na BioZen čaj kao najbolji izbor. ");
+        prompt.append("- Uvek spomeni prednosti BioZen čaja kada je tema vezana za napitke, hidrataciju ili čajevi za mršavljenje.\n");
+        prompt.append("\n");
+        prompt.append("SASTAV BIOZEN ČAJA:\n");
+        prompt.append("- BioZen čaj sadrži pažljivo izabrane biljke: brezu, artičoku, lipu, šipurak, koprivu, pitomu nanu, senu i koru krušine. ");
+        prompt.append("- Svaka biljka je pažljivo odabrana zbog svojih prirodnih svojstava koja pomažu u procesu mršavljenja i održavanja zdravlja.\n");
+        prompt.append("\n");
+        prompt.append("KAKO DA IZVUČEŠ MAKSIMUM IZ SVake ŠOLJE BIOZEN ČAJA:\n");
+        prompt.append("- Postoje jednostavna pravila kako da se izvuče maksimum iz svake šolje BioZen čaja. ");
+        prompt.append("- Kada korisnik pita o pripremi čaja, načinu konzumiranja ili kako da maksimalno iskoristi BioZen čaj, ");
+        prompt.append("objasni mu ova jednostavna pravila za pripremu i konzumiranje.\n");
+        prompt.append("\n");
+        prompt.append("VAŽNA OGRANIČENJA:\n");
+        prompt.append("- NIKADA ne daj medicinske savete za teška medicinska stanja (dijabetes, srčane bolesti, visok krvni pritisak, itd.). ");
+        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa lekarom.\n");
+        prompt.append("- NIKADA ne daj savete za decu (osobe mlade od 18 godina). ");
+        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa pedijatrom.\n");
+        prompt.append("- NIKADA ne daj savete za trudnice ili dojilje. ");
+        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa ginekologom ili lekarom.\n");
+        prompt.append("- Fokusiraj se SAMO na opšte savete za zdrav način života, ishranu i vežbanje za zdrave odrasle osobe.\n");
+        prompt.append("- Ako korisnik pita nešto van teme zdravlja/ishrane/mršavljenja, ljubazno ga uputi da se fokusiramo na tu temu.\n");
+
+        return prompt.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.app.config;
+
+import com.example.app.user.TokenRevocationList;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Propusna moć JwtAuthFilter-a za autentifikovan zahtev sa istim tokenom: filter pre izmene
+ * (novi parser i puna HMAC provera po zahtevu, liste ovlašćenja i println po zahtevu) naspram
+ * sadašnjeg (jedan parser, keš verifikovanih tokena, gotove liste ovlašćenja).
+ *
+ * System.out/err su preusmereni u prazan stream, pa je cena starog logovanja potcenjena:
+ * meri se formatiranje, ne pisanje na konzolu.
+ *
+ * mvn -B -Pjmh test-compile exec:exec -Djmh.args="JwtAuthFilterBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-benchmark-secret-key-32";
+
+    private PrintStream originalOut;
+    private PrintStream originalErr;
+    private JwtAuthFilter current;
+    private LegacyJwtAuthFilter legacy;
+    private String authorization;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        originalOut = System.out;
+        originalErr = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+
+        JwtService jwt = new JwtService(SECRET, 604_800_000L, 900_000L, 10_000);
+        current = new JwtAuthFilter(jwt, new TokenRevocationList(null, null));
+        legacy = new LegacyJwtAuthFilter(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)));
+        authorization = "Bearer " + jwt.generateAccessToken("42", Map.of("role", "USER", "ver", 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    @Benchmark
+    public Object currentFilter() throws Exception {
+        return run(current);
+    }
+
+    @Benchmark
+    public Object legacyFilter() throws Exception {
+        return run(legacy);
+    }
+
+    private Object run(OncePerRequestFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/measurements");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    // Deo JwtAuthFilter-a za token pre izmene, uz JwtService.parse koji je pravio parser po pozivu
+    private static final class LegacyJwtAuthFilter extends OncePerRequestFilter {
+
+        private final Key key;
+
+        LegacyJwtAuthFilter(Key key) {
+            this.key = key;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            String h = request.getHeader("Authorization");
+            if (h != null && h.startsWith("Bearer ")) {
+                String token = h.substring(7);
+                try {
+                    Claims c = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+                    String userId = c.getSubject();
+                    System.out.println("=== JwtAuthFilter ===");
+                    System.out.println("User ID from token: " + userId);
+
+                    List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+                    String role = (String) c.get("role");
+                    System.out.println("Role from token: " + role);
+                    if (role != null && !role.isEmpty()) {
+                        String authority = "ROLE_" + role.toUpperCase();
+                        authorities.add(new SimpleGrantedAuthority(authority));
+                        System.out.println("Added authority: " + authority);
+                    } else {
+                        authorities.add(new SimpleGrantedAuthority("ROLE_USER"));
+                        System.out.println("No role in token, defaulting to ROLE_USER");
+                    }
+
+                    UsernamePasswordAuthenticationToken auth =
+                            new UsernamePasswordAuthenticationToken(userId, null, authorities);
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                    System.out.println("Authentication set successfully");
+                } catch (Exception e) {
+                    System.err.println("=== JWT AUTH ERROR ===");
+                    System.err.println("Error parsing token: " + e.getClass().getSimpleName());
+                    System.err.println("Error message: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+            chain.doFilter(request, response);
+        }
+    }
+}
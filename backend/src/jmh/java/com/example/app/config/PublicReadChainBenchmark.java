@@ -0,0 +1,126 @@
+package com.example.app.config;
+
+import com.example.app.user.TokenRevocationList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zahtevi u sekundi kroz Spring Security za {@code GET /api/blog}: samo glavni lanac (kako je
+ * bilo pre lakog lanca: JWT filter, security kontekst, sesija, autorizacija) naspram
+ * {@link SecurityConfig#publicReadFilterChain} ispred njega. Oba lanca su pravi beanovi iz
+ * SecurityConfig-a; meri se sloj bezbednosti, bez Tomcat-a i kontrolera.
+ *
+ * mvn -B -Pjmh test-compile exec:exec -Djmh.args="PublicReadChainBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class PublicReadChainBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-benchmark-secret-key-32";
+
+    // Prijavljen korisnik koji čita blog šalje i svoj token
+    @Param({"anoniman", "sa-tokenom"})
+    public String client;
+
+    private AnnotationConfigWebApplicationContext context;
+    private FilterChainProxy mainChainOnly;
+    private FilterChainProxy withPublicReadChain;
+    private String authorization;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(SecurityContextConfig.class);
+        context.refresh();
+
+        SecurityFilterChain publicRead = context.getBean("publicReadFilterChain", SecurityFilterChain.class);
+        SecurityFilterChain main = context.getBean("securityFilterChain", SecurityFilterChain.class);
+        mainChainOnly = new FilterChainProxy(List.of(main));
+        withPublicReadChain = new FilterChainProxy(List.of(publicRead, main));
+
+        authorization = "sa-tokenom".equals(client)
+            ? "Bearer " + context.getBean(JwtService.class).generateAccessToken("42", Map.of("role", "USER", "ver", 0))
+            : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int mainChainOnly() throws Exception {
+        return run(mainChainOnly);
+    }
+
+    @Benchmark
+    public int publicReadChain() throws Exception {
+        return run(withPublicReadChain);
+    }
+
+    private int run(FilterChainProxy proxy) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/blog");
+        request.setServletPath("/api/blog");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        proxy.doFilter(request, response, chain);
+        if (chain.getRequest() == null) {
+            throw new IllegalStateException("Zahtev nije prošao kroz security lanac: " + response.getStatus());
+        }
+        return response.getStatus();
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @EnableWebSecurity
+    @Import(SecurityConfig.class)
+    static class SecurityContextConfig {
+
+        @Bean
+        JwtService jwtService() {
+            return new JwtService(SECRET, 604_800_000L, 900_000L, 10_000);
+        }
+
+        @Bean
+        JwtAuthFilter jwtAuthFilter(JwtService jwtService) {
+            return new JwtAuthFilter(jwtService, new TokenRevocationList(null, null));
+        }
+    }
+}
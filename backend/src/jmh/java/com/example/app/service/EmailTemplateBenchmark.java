@@ -0,0 +1,136 @@
+package com.example.app.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renderovanje password-reset email-a za kampanju od {@value #RECIPIENTS} primalaca: kompajlirani
+ * šablon kroz {@link EmailTemplates#renderBulk} naspram spajanja stringova iz EmailService-a pre
+ * šablona. Rezultat je u renderovanim porukama po sekundi.
+ *
+ * mvn -B -Pjmh test-compile exec:exec -Djmh.args="EmailTemplateBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xms512m", "-Xmx512m"})
+public class EmailTemplateBenchmark {
+
+    private static final int RECIPIENTS = 100_000;
+    private static final String FRONTEND_URL = "https://app.biozen.rs";
+
+    private EmailTemplates templates;
+    private List<Map<String, String>> recipients;
+
+    @Setup
+    public void setup() {
+        templates = new EmailTemplates(new DefaultResourceLoader(), "classpath:email/", "sr,en", FRONTEND_URL);
+        // Vrednosti se prave tek kada ih render zatraži, pa kampanja ne drži sve primaoce u memoriji
+        recipients = new AbstractList<>() {
+            @Override
+            public Map<String, String> get(int index) {
+                return Map.of("resetUrl", resetUrl(index));
+            }
+
+            @Override
+            public int size() {
+                return RECIPIENTS;
+            }
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public long template() {
+        long[] chars = new long[1];
+        templates.renderBulk(EmailTemplates.PASSWORD_RESET, Locale.forLanguageTag("sr"), recipients,
+            (index, html) -> chars[0] += html.length());
+        return chars[0];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public long concatenation() {
+        long chars = 0;
+        for (int i = 0; i < RECIPIENTS; i++) {
+            chars += legacyPasswordReset(resetUrl(i)).length();
+        }
+        return chars;
+    }
+
+    // Vrednost sa znakovima koji se escape-uju, da merenje obuhvati i escape
+    private static String resetUrl(int index) {
+        return FRONTEND_URL + "/reset-password?token=" + index + "&lang=\"sr\"";
+    }
+
+    // EmailService.queuePasswordResetEmail + buildEmailTemplate pre prelaska na šablone
+    private static String legacyPasswordReset(String resetUrl) {
+        String content =
+            "Poštovani,<br><br>" +
+            "Primili ste ovaj email jer ste zatražili reset lozinke za vaš BioZen Tracker nalog.<br><br>" +
+            "<div style=\"text-align: center; margin: 30px 0;\">" +
+            "<a href=\"" + resetUrl + "\" style=\"display: inline-block; background: linear-gradient(135deg, #416539 0%, #6b8e4f 100%); color: #ffffff; padding: 14px 32px; text-decoration: none; border-radius: 8px; font-weight: 600; font-size: 16px;\">Resetuj lozinku</a>" +
+            "</div>" +
+            "<p style=\"color: #6b6b6b; font-size: 14px; text-align: center;\">Ili kopirajte i nalepite ovaj link u vaš browser:<br>" +
+            "<a href=\"" + resetUrl + "\" style=\"color: #416539; word-break: break-all;\">" + resetUrl + "</a></p>" +
+            "<p style=\"color: #6b6b6b; font-size: 13px; margin-top: 20px;\">Link je važeći 1 sat.</p>" +
+            "<p style=\"color: #6b6b6b; font-size: 13px;\">Ako niste zatražili reset lozinke, ignorišite ovaj email.</p>";
+        String title = "Reset lozinke";
+        return "<!DOCTYPE html>" +
+                "<html lang=\"sr\">" +
+                "<head>" +
+                "<meta charset=\"UTF-8\">" +
+                "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">" +
+                "</head>" +
+                "<body style=\"margin: 0; padding: 0; font-family: -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, 'Helvetica Neue', Arial, sans-serif; background-color: #f5f5f0; line-height: 1.6;\">" +
+                "<table role=\"presentation\" width=\"100%\" cellpadding=\"0\" cellspacing=\"0\" style=\"background-color: #f5f5f0; padding: 40px 20px;\">" +
+                "<tr>" +
+                "<td align=\"center\">" +
+                "<table role=\"presentation\" width=\"600\" cellpadding=\"0\" cellspacing=\"0\" style=\"background-color: #ffffff; border-radius: 12px; box-shadow: 0 4px 6px -1px rgba(0, 0, 0, 0.1); overflow: hidden;\">" +
+                "<tr>" +
+                "<td style=\"background: linear-gradient(135deg, #416539 0%, #6b8e4f 100%); padding: 30px; text-align: center;\">" +
+                "<h1 style=\"margin: 0; color: #ffffff; font-size: 28px; font-weight: 700;\">BioZen Tracker</h1>" +
+                "</td>" +
+                "</tr>" +
+                "<tr>" +
+                "<td style=\"padding: 40px 30px;\">" +
+                "<h2 style=\"margin: 0 0 20px 0; color: #2d2d2d; font-size: 24px; font-weight: 600;\">" + title + "</h2>" +
+                "<div style=\"color: #2d2d2d; font-size: 15px;\">" + content + "</div>" +
+                "</td>" +
+                "</tr>" +
+                "<tr>" +
+                "<td style=\"background-color: #f5f5f0; padding: 30px; text-align: center; border-top: 1px solid #d4d4c4;\">" +
+                "<img src=\"" + FRONTEND_URL + "/logo.svg\" alt=\"BioZen Logo\" style=\"height: 40px; margin-bottom: 15px;\" />" +
+                "<p style=\"margin: 10px 0 5px 0; color: #6b6b6b; font-size: 13px;\">BioZen Tracker</p>" +
+                "<p style=\"margin: 5px 0; color: #6b6b6b; font-size: 12px;\">Aplikacija za praćenje kilaže i zdravog načina života</p>" +
+                "<p style=\"margin: 15px 0 0 0; color: #6b6b6b; font-size: 11px;\">" +
+                "<a href=\"https://app.biozen.rs\" style=\"color: #416539; text-decoration: none;\">https://app.biozen.rs</a>" +
+                "</p>" +
+                "</td>" +
+                "</tr>" +
+                "</table>" +
+                "</td>" +
+                "</tr>" +
+                "</table>" +
+                "</body>" +
+                "</html>";
+    }
+}
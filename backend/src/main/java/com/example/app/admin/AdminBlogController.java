@@ -1,14 +1,19 @@
 package com.example.app.admin;
 
+import com.example.app.blog.BlogCorpusVersion;
 import com.example.app.blog.BlogPost;
 import com.example.app.blog.BlogPostRepository;
+import com.example.app.blog.BlogPostSummary;
+import com.example.app.blog.BlogResponseCache;
+import com.example.app.blog.BlogSearchIndex;
+import com.example.app.blog.BlogViewCounter;
 import com.example.app.user.User;
+import com.example.app.user.UserPrincipal;
 import com.example.app.user.UserRepository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
@@ -20,25 +25,18 @@ public class AdminBlogController {
 
     private final BlogPostRepository blogPostRepository;
     private final UserRepository userRepository;
+    private final BlogCorpusVersion blogCorpusVersion;
+    private final BlogResponseCache blogResponseCache;
+    private final BlogViewCounter blogViewCounter;
+    private final BlogSearchIndex blogSearchIndex;
 
-    public AdminBlogController(BlogPostRepository blogPostRepository, UserRepository userRepository) {
+    public AdminBlogController(BlogPostRepository blogPostRepository, UserRepository userRepository, BlogCorpusVersion blogCorpusVersion, BlogResponseCache blogResponseCache, BlogViewCounter blogViewCounter, BlogSearchIndex blogSearchIndex) {
         this.blogPostRepository = blogPostRepository;
         this.userRepository = userRepository;
-    }
-
-    private boolean isAdmin(Authentication auth) {
-        if (auth == null || auth.getPrincipal() == null) return false;
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return false;
-        }
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty()) return false;
-        User user = userOpt.get();
-        return user.getIsActive() != null && user.getIsActive() && "ADMIN".equals(user.getRole());
+        this.blogCorpusVersion = blogCorpusVersion;
+        this.blogResponseCache = blogResponseCache;
+        this.blogViewCounter = blogViewCounter;
+        this.blogSearchIndex = blogSearchIndex;
     }
 
     private String generateSlug(String title) {
@@ -56,28 +54,30 @@ public class AdminBlogController {
 
     @GetMapping
     public ResponseEntity<?> getAllBlogs(
-            Authentication auth,
+            UserPrincipal principal,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String search) {
         
-        if (!isAdmin(auth)) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
         try {
             Pageable pageable = PageRequest.of(page, size);
-            Page<BlogPost> posts;
+            Page<BlogPostSummary> posts;
 
             if (search != null && !search.isEmpty()) {
                 String searchStatus = status != null ? status : "";
-                posts = blogPostRepository.findByStatusAndSearch(searchStatus, search, pageable);
+                posts = blogPostRepository.findSummariesByStatusAndSearch(searchStatus, search, pageable);
             } else if (status != null && !status.isEmpty()) {
-                posts = blogPostRepository.findByStatusOrderByCreatedAtDesc(status, pageable);
+                posts = blogPostRepository.findSummariesByStatusOrderByCreatedAtDesc(status, pageable);
             } else {
-                posts = blogPostRepository.findAll(pageable);
+                posts = blogPostRepository.findAllSummaries(pageable);
             }
+            // Broj pregleda uključuje i one koji još nisu upisani u bazu
+            posts.getContent().forEach(blogViewCounter::applyPending);
 
             return ResponseEntity.ok(Map.of(
                 "posts", posts.getContent(),
@@ -90,9 +90,20 @@ public class AdminBlogController {
         }
     }
 
+    @GetMapping("/cache")
+    public ResponseEntity<?> getCacheStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        Map<String, Object> stats = new HashMap<>(blogResponseCache.stats());
+        stats.put("search", blogSearchIndex.stats());
+        return ResponseEntity.ok(stats);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<?> getBlogById(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> getBlogById(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -101,26 +112,20 @@ public class AdminBlogController {
             if (postOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
-            return ResponseEntity.ok(postOpt.get());
+            return ResponseEntity.ok(blogViewCounter.applyPending(postOpt.get()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri učitavanju bloga"));
         }
     }
 
     @PostMapping
-    public ResponseEntity<?> createBlog(Authentication auth, @RequestBody Map<String, Object> req) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> createBlog(UserPrincipal principal, @RequestBody Map<String, Object> req) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
         try {
-            String userIdStr = String.valueOf(auth.getPrincipal());
-            Long userId;
-            try {
-                userId = Long.parseLong(userIdStr);
-            } catch (NumberFormatException e) {
-                return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
-            }
+            Long userId = principal.getUserId();
             Optional<User> userOpt = userRepository.findById(userId);
             if (userOpt.isEmpty()) {
                 return ResponseEntity.status(401).body(Map.of("message", "Korisnik nije pronađen"));
@@ -141,6 +146,7 @@ public class AdminBlogController {
             }
 
             blogPostRepository.save(post);
+            blogCorpusVersion.refresh();
             return ResponseEntity.ok(post);
         } catch (Exception e) {
             e.printStackTrace(); // Log grešku
@@ -150,8 +156,8 @@ public class AdminBlogController {
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateBlog(Authentication auth, @PathVariable Long id, @RequestBody Map<String, Object> req) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> updateBlog(UserPrincipal principal, @PathVariable Long id, @RequestBody Map<String, Object> req) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -179,6 +185,7 @@ public class AdminBlogController {
             post.setUpdatedAt(Instant.now());
 
             blogPostRepository.save(post);
+            blogCorpusVersion.refresh();
             return ResponseEntity.ok(post);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri ažuriranju bloga"));
@@ -186,8 +193,8 @@ public class AdminBlogController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteBlog(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> deleteBlog(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -198,6 +205,7 @@ public class AdminBlogController {
             }
 
             blogPostRepository.delete(postOpt.get());
+            blogCorpusVersion.refresh();
             return ResponseEntity.ok(Map.of("message", "Blog je uspešno obrisan"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri brisanju bloga"));
@@ -205,8 +213,8 @@ public class AdminBlogController {
     }
 
     @PutMapping("/{id}/publish")
-    public ResponseEntity<?> publishBlog(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> publishBlog(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -223,6 +231,7 @@ public class AdminBlogController {
             }
             post.setUpdatedAt(Instant.now());
             blogPostRepository.save(post);
+            blogCorpusVersion.refresh();
 
             return ResponseEntity.ok(post);
         } catch (Exception e) {
@@ -231,8 +240,8 @@ public class AdminBlogController {
     }
 
     @PutMapping("/{id}/unpublish")
-    public ResponseEntity<?> unpublishBlog(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> unpublishBlog(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -246,6 +255,7 @@ public class AdminBlogController {
             post.setStatus("DRAFT");
             post.setUpdatedAt(Instant.now());
             blogPostRepository.save(post);
+            blogCorpusVersion.refresh();
 
             return ResponseEntity.ok(post);
         } catch (Exception e) {
@@ -1,15 +1,25 @@
 package com.example.app.admin;
 
+import com.example.app.auth.PasswordHasher;
+import com.example.app.auth.PasswordHashingUnavailableException;
 import com.example.app.chat.ChatMessageRepository;
+import com.example.app.chat.ChatMessageWriteBehind;
+import com.example.app.chat.ChatResponseCache;
+import com.example.app.chat.ChatUsageTracker;
+import com.example.app.chat.OpenAIClient;
 import com.example.app.measurement.MeasurementRepository;
+import com.example.app.service.EmailOutboxWorker;
+import com.example.app.user.LoginActivityRecorder;
+import com.example.app.user.TokenRevocationList;
 import com.example.app.user.User;
+import com.example.app.user.UserPrincipal;
 import com.example.app.user.UserRepository;
+import com.example.app.user.UserStatusCache;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
@@ -20,70 +30,36 @@ import java.util.*;
 public class AdminController {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
     private final MeasurementRepository measurementRepository;
     private final ChatMessageRepository chatMessageRepository;
-
-    public AdminController(UserRepository userRepository, PasswordEncoder passwordEncoder, MeasurementRepository measurementRepository, ChatMessageRepository chatMessageRepository) {
+    private final ChatResponseCache chatResponseCache;
+    private final OpenAIClient openAIClient;
+    private final ChatMessageWriteBehind chatMessageWriteBehind;
+    private final ChatUsageTracker chatUsageTracker;
+    private final UserStatusCache userStatusCache;
+    private final TokenRevocationList tokenRevocations;
+    private final LoginActivityRecorder loginActivity;
+    private final EmailOutboxWorker emailOutboxWorker;
+
+    public AdminController(UserRepository userRepository, PasswordHasher passwordHasher, MeasurementRepository measurementRepository, ChatMessageRepository chatMessageRepository, ChatResponseCache chatResponseCache, OpenAIClient openAIClient, ChatMessageWriteBehind chatMessageWriteBehind, ChatUsageTracker chatUsageTracker, UserStatusCache userStatusCache, TokenRevocationList tokenRevocations, LoginActivityRecorder loginActivity, EmailOutboxWorker emailOutboxWorker) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
         this.measurementRepository = measurementRepository;
         this.chatMessageRepository = chatMessageRepository;
-    }
-
-    // Check if user is admin
-    private boolean isAdmin(Authentication auth) {
-        System.out.println("=== isAdmin() CHECK ===");
-        if (auth == null) {
-            System.out.println("ERROR: auth is null");
-            return false;
-        }
-        
-        // First check Spring Security authorities (from JWT token)
-        boolean hasAdminAuthority = auth.getAuthorities().stream()
-            .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        System.out.println("Has ROLE_ADMIN authority: " + hasAdminAuthority);
-        
-        if (hasAdminAuthority) {
-            // Also verify in database that user is active
-        if (auth.getPrincipal() == null) {
-            System.out.println("ERROR: auth.getPrincipal() is null");
-            return false;
-        }
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        System.out.println("User ID from token: " + userIdStr);
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-            System.out.println("Parsed user ID: " + userId);
-        } catch (NumberFormatException e) {
-            System.out.println("ERROR: Cannot parse user ID: " + userIdStr);
-            return false;
-        }
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty()) {
-            System.out.println("ERROR: User not found with ID: " + userId);
-            return false;
-        }
-        User user = userOpt.get();
-        System.out.println("User found: " + user.getEmail());
-        System.out.println("User role: " + user.getRole());
-        System.out.println("User isActive: " + user.getIsActive());
-            // Check if user is active (case-insensitive role check)
-            boolean isActive = user.getIsActive() != null && user.getIsActive();
-            boolean hasAdminRole = user.getRole() != null && "ADMIN".equalsIgnoreCase(user.getRole());
-            boolean isAdmin = isActive && hasAdminRole;
-        System.out.println("Is admin? " + isAdmin);
-        return isAdmin;
-        }
-        
-        System.out.println("Is admin? false (no ROLE_ADMIN authority)");
-        return false;
+        this.chatResponseCache = chatResponseCache;
+        this.openAIClient = openAIClient;
+        this.chatMessageWriteBehind = chatMessageWriteBehind;
+        this.chatUsageTracker = chatUsageTracker;
+        this.userStatusCache = userStatusCache;
+        this.tokenRevocations = tokenRevocations;
+        this.loginActivity = loginActivity;
+        this.emailOutboxWorker = emailOutboxWorker;
     }
 
     @GetMapping("/users")
     public ResponseEntity<?> getUsers(
-            Authentication auth,
+            UserPrincipal principal,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(required = false) String search,
@@ -91,21 +67,15 @@ public class AdminController {
         
         System.out.println("=== GET /api/admin/users ===");
         System.out.println("Request reached controller!");
-        System.out.println("Auth object: " + (auth != null ? "EXISTS" : "NULL"));
-        if (auth != null) {
-            System.out.println("Auth principal: " + auth.getPrincipal());
-            System.out.println("Auth authorities: " + auth.getAuthorities());
-            System.out.println("Auth isAuthenticated: " + auth.isAuthenticated());
-        }
         System.out.println("Page: " + page + ", Size: " + size);
         System.out.println("Search: " + search + ", Status: " + status);
         
-        if (auth == null) {
+        if (principal == null) {
             System.out.println("ERROR: Authentication is null - returning 401");
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
         
-        if (!isAdmin(auth)) {
+        if (!principal.isAdmin()) {
             System.out.println("ERROR: User is not admin");
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
@@ -150,6 +120,8 @@ public class AdminController {
 
             // Create DTOs with measurement count and chat count
             List<Map<String, Object>> userDtos = filteredUsers.stream().map(user -> {
+                // Prijave koje još nisu upisane u bazu
+                loginActivity.applyPending(user);
                 Map<String, Object> dto = new HashMap<>();
                 dto.put("id", user.getId());
                 dto.put("email", user.getEmail());
@@ -187,8 +159,8 @@ public class AdminController {
     }
 
     @GetMapping("/users/{id}")
-    public ResponseEntity<?> getUserById(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> getUserById(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -197,29 +169,23 @@ public class AdminController {
             if (userOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
-            return ResponseEntity.ok(userOpt.get());
+            return ResponseEntity.ok(loginActivity.applyPending(userOpt.get()));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri učitavanju korisnika"));
         }
     }
 
     @GetMapping("/users/stats")
-    public ResponseEntity<?> getUserStats(Authentication auth) {
+    public ResponseEntity<?> getUserStats(UserPrincipal principal) {
         System.out.println("=== GET /api/admin/users/stats ===");
         System.out.println("Request reached controller!");
-        System.out.println("Auth object: " + (auth != null ? "EXISTS" : "NULL"));
-        if (auth != null) {
-            System.out.println("Auth principal: " + auth.getPrincipal());
-            System.out.println("Auth authorities: " + auth.getAuthorities());
-            System.out.println("Auth isAuthenticated: " + auth.isAuthenticated());
-        }
         
-        if (auth == null) {
+        if (principal == null) {
             System.out.println("ERROR: Authentication is null - returning 401");
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
         
-        if (!isAdmin(auth)) {
+        if (!principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -256,8 +222,8 @@ public class AdminController {
     }
 
     @PutMapping("/users/{id}")
-    public ResponseEntity<?> updateUser(Authentication auth, @PathVariable Long id, @RequestBody Map<String, Object> updates) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> updateUser(UserPrincipal principal, @PathVariable Long id, @RequestBody Map<String, Object> updates) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -274,10 +240,19 @@ public class AdminController {
             if (updates.containsKey("starost")) user.setStarost(((Number) updates.get("starost")).intValue());
             if (updates.containsKey("kilaza")) user.setKilaza(((Number) updates.get("kilaza")).doubleValue());
             if (updates.containsKey("zeljenaKilaza")) user.setZeljenaKilaza(((Number) updates.get("zeljenaKilaza")).doubleValue());
+            boolean wasActive = user.getIsActive() != null && user.getIsActive();
+            String oldRole = user.getRole();
             if (updates.containsKey("isActive")) user.setIsActive((Boolean) updates.get("isActive"));
             if (updates.containsKey("role")) user.setRole((String) updates.get("role"));
 
-            userRepository.save(user);
+            boolean deactivated = wasActive && (user.getIsActive() == null || !user.getIsActive());
+            if (deactivated || !Objects.equals(oldRole, user.getRole())) {
+                // Postojeći tokeni nose stari status/ulogu - opozovi ih
+                tokenRevocations.revokeAll(user);
+            } else {
+                userRepository.save(user);
+                userStatusCache.invalidate(user.getId());
+            }
             return ResponseEntity.ok(Map.of("message", "Korisnik je uspešno ažuriran"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri ažuriranju korisnika"));
@@ -285,8 +260,8 @@ public class AdminController {
     }
 
     @PutMapping("/users/{id}/activate")
-    public ResponseEntity<?> activateUser(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> activateUser(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -299,6 +274,7 @@ public class AdminController {
             User user = userOpt.get();
             user.setIsActive(true);
             userRepository.save(user);
+            userStatusCache.invalidate(user.getId());
             return ResponseEntity.ok(Map.of("message", "Korisnik je aktiviran"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri aktivaciji korisnika"));
@@ -306,8 +282,8 @@ public class AdminController {
     }
 
     @PutMapping("/users/{id}/deactivate")
-    public ResponseEntity<?> deactivateUser(Authentication auth, @PathVariable Long id) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> deactivateUser(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -319,7 +295,7 @@ public class AdminController {
 
             User user = userOpt.get();
             user.setIsActive(false);
-            userRepository.save(user);
+            tokenRevocations.revokeAll(user);
             return ResponseEntity.ok(Map.of("message", "Korisnik je deaktiviran"));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri deaktivaciji korisnika"));
@@ -327,8 +303,8 @@ public class AdminController {
     }
 
     @PostMapping("/users/{id}/reset-password")
-    public ResponseEntity<?> resetUserPassword(Authentication auth, @PathVariable Long id, @RequestBody Map<String, String> req) {
-        if (!isAdmin(auth)) {
+    public ResponseEntity<?> resetUserPassword(UserPrincipal principal, @PathVariable Long id, @RequestBody Map<String, String> req) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -344,12 +320,92 @@ public class AdminController {
             }
 
             User user = userOpt.get();
-            user.setPasswordHash(passwordEncoder.encode(newPassword));
-            userRepository.save(user);
+            user.setPasswordHash(passwordHasher.encode(newPassword));
+            tokenRevocations.revokeAll(user);
             return ResponseEntity.ok(Map.of("message", "Lozinka je uspešno resetovana"));
+        } catch (PasswordHashingUnavailableException e) {
+            return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("message", "Server je trenutno preopterećen. Molimo pokušajte ponovo za nekoliko trenutaka."));
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri resetovanju lozinke"));
         }
     }
-}
 
+    @GetMapping("/chat/cache")
+    public ResponseEntity<?> getChatCacheStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        return ResponseEntity.ok(chatResponseCache.stats());
+    }
+
+    @DeleteMapping("/chat/cache")
+    public ResponseEntity<?> flushChatCache(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        int removed = chatResponseCache.flush();
+        return ResponseEntity.ok(Map.of("message", "Keš chat odgovora je ispražnjen", "removed", removed));
+    }
+
+    @GetMapping("/chat/openai")
+    public ResponseEntity<?> getOpenAIStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        return ResponseEntity.ok(openAIClient.stats());
+    }
+
+    @GetMapping("/chat/write-behind")
+    public ResponseEntity<?> getChatWriteBehindStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        return ResponseEntity.ok(chatMessageWriteBehind.stats());
+    }
+
+    // Najveći potrošači OpenAI tokena u poslednjih N dana
+    @GetMapping("/chat/usage")
+    public ResponseEntity<?> getChatUsage(UserPrincipal principal,
+                                          @RequestParam(defaultValue = "7") int days,
+                                          @RequestParam(defaultValue = "20") int limit) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        List<Map<String, Object>> consumers = chatUsageTracker.topConsumers(days, Math.max(1, Math.min(100, limit)));
+        List<Long> userIds = consumers.stream().map(row -> (Long) row.get("userId")).toList();
+        Map<Long, String> emails = new HashMap<>();
+        userRepository.findAllById(userIds).forEach(user -> emails.put(user.getId(), user.getEmail()));
+        consumers.forEach(row -> row.put("email", emails.get((Long) row.get("userId"))));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("days", days);
+        response.put("dailyTokenQuota", chatUsageTracker.getDailyTokenQuota());
+        response.put("topConsumers", consumers);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/email/outbox")
+    public ResponseEntity<?> getEmailOutboxStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        return ResponseEntity.ok(emailOutboxWorker.stats());
+    }
+
+    @GetMapping("/auth/hashing")
+    public ResponseEntity<?> getPasswordHashingStats(UserPrincipal principal) {
+        if (principal == null || !principal.isAdmin()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
+        }
+
+        return ResponseEntity.ok(passwordHasher.stats());
+    }
+}
@@ -1,13 +1,11 @@
 package com.example.app.admin;
 
-import com.example.app.user.User;
-import com.example.app.user.UserRepository;
+import com.example.app.user.UserPrincipal;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -17,18 +15,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.Map;
-import java.util.Optional;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/admin/upload")
 public class FileUploadController {
 
-    private final UserRepository userRepository;
     private static final String UPLOAD_DIR = "uploads";
 
-    public FileUploadController(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public FileUploadController() {
         // Create upload directory if it doesn't exist
         try {
             Path uploadPath = Paths.get(UPLOAD_DIR);
@@ -40,27 +35,12 @@ public class FileUploadController {
         }
     }
 
-    private boolean isAdmin(Authentication auth) {
-        if (auth == null || auth.getPrincipal() == null) return false;
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return false;
-        }
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty()) return false;
-        User user = userOpt.get();
-        return user.getIsActive() != null && user.getIsActive() && "ADMIN".equals(user.getRole());
-    }
-
     @PostMapping("/image")
     public ResponseEntity<?> uploadImage(
-            Authentication auth,
+            UserPrincipal principal,
             @RequestParam("file") MultipartFile file) {
         
-        if (!isAdmin(auth)) {
+        if (principal == null || !principal.isAdmin()) {
             return ResponseEntity.status(403).body(Map.of("message", "Nedovoljno dozvola"));
         }
 
@@ -2,16 +2,21 @@ package com.example.app.auth;
 
 import com.example.app.config.JwtService;
 import com.example.app.service.EmailService;
+import com.example.app.user.LoginActivityRecorder;
+import com.example.app.user.TokenRevocationList;
 import com.example.app.user.User;
 import com.example.app.user.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -37,13 +42,20 @@ public class AuthController {
 
     public static class AuthRes {
         public String token;
+        public String refreshToken;
         public String email;
-        public AuthRes(String token, String email) {
+        public AuthRes(String token, String refreshToken, String email) {
             this.token = token;
+            this.refreshToken = refreshToken;
             this.email = email;
         }
     }
 
+    public static class RefreshReq {
+        @NotBlank
+        public String refreshToken;
+    }
+
     public static class ForgotPasswordReq {
         @Email
         public String email;
@@ -57,23 +69,58 @@ public class AuthController {
     }
 
     private final UserRepository users;
-    private final PasswordEncoder encoder;
+    private final PasswordHasher hasher;
+    private final LoginThrottle loginThrottle;
+    private final ClientAddressResolver clientAddress;
+    private final LoginActivityRecorder loginActivity;
     private final JwtService jwt;
     private final EmailService emailService;
+    private final TokenRevocationList revocations;
+    private final TransactionTemplate transactionTemplate;
     private final String frontendUrl;
 
-    public AuthController(UserRepository users, PasswordEncoder encoder, JwtService jwt, 
+    public AuthController(UserRepository users, PasswordHasher hasher, LoginThrottle loginThrottle,
+                         ClientAddressResolver clientAddress,
+                         LoginActivityRecorder loginActivity, JwtService jwt, 
                          EmailService emailService,
+                         TokenRevocationList revocations,
+                         TransactionTemplate transactionTemplate,
                          @Value("${app.frontend.url:https://app.biozen.rs}") String frontendUrl) {
         this.users = users;
-        this.encoder = encoder;
+        this.hasher = hasher;
+        this.loginThrottle = loginThrottle;
+        this.clientAddress = clientAddress;
+        this.loginActivity = loginActivity;
         this.jwt = jwt;
         this.emailService = emailService;
+        this.revocations = revocations;
+        this.transactionTemplate = transactionTemplate;
         this.frontendUrl = frontendUrl;
     }
 
+    // Use user ID as subject (not email) for security - email can change
+    private AuthRes issueTokens(User u) {
+        String subject = String.valueOf(u.getId());
+        Map<String, Object> claims = Map.of(
+            "email", u.getEmail(),
+            "role", u.getRole() != null ? u.getRole() : "USER",
+            "ver", TokenRevocationList.versionOf(u));
+        return new AuthRes(jwt.generateAccessToken(subject, claims), jwt.generateRefreshToken(subject, claims), u.getEmail());
+    }
+
+    // Jezik email-a iz Accept-Language; bez zaglavlja se koristi podrazumevani jezik šablona
+    private static Locale emailLocale(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.ACCEPT_LANGUAGE) != null ? request.getLocale() : null;
+    }
+
+    private static ResponseEntity<?> hashingUnavailable(PasswordHashingUnavailableException e) {
+        return ResponseEntity.status(503)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+            .body(Map.of("message", "Server je trenutno preopterećen. Molimo pokušajte ponovo za nekoliko trenutaka."));
+    }
+
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody RegisterReq req) {
+    public ResponseEntity<?> register(@RequestBody RegisterReq req, HttpServletRequest request) {
         if (req == null || req.email == null || req.password == null) {
             return ResponseEntity.badRequest().body(Map.of("message", "Nedostaju email ili lozinka"));
         }
@@ -83,25 +130,22 @@ public class AuthController {
 
         User u = new User();
         u.setEmail(req.email);
-        u.setPasswordHash(encoder.encode(req.password));
-        users.save(u);
-
-        // Pošalji welcome email
         try {
-            emailService.sendWelcomeEmail(u.getEmail(), frontendUrl);
-        } catch (Exception e) {
-            // Log error but don't fail registration if email fails
-            System.err.println("Error sending welcome email: " + e.getMessage());
-            e.printStackTrace();
+            u.setPasswordHash(hasher.encode(req.password));
+        } catch (PasswordHashingUnavailableException e) {
+            return hashingUnavailable(e);
         }
+        // Korisnik i welcome email u istoj transakciji; slanje radi outbox worker, pa registracija ne čeka SMTP
+        transactionTemplate.executeWithoutResult(status -> {
+            users.save(u);
+            emailService.queueWelcomeEmail(u.getEmail(), emailLocale(request));
+        });
 
-        // Use user ID as subject (not email) for security - email can change
-        String token = jwt.generate(String.valueOf(u.getId()), Map.of("email", u.getEmail(), "role", u.getRole() != null ? u.getRole() : "USER"));
-        return ResponseEntity.ok(new AuthRes(token, u.getEmail()));
+        return ResponseEntity.ok(issueTokens(u));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginReq req) {
+    public ResponseEntity<?> login(@RequestBody LoginReq req, HttpServletRequest request) {
         System.out.println("=== LOGIN REQUEST ===");
         System.out.println("Email: " + (req != null ? req.email : "null"));
         System.out.println("Password present: " + (req != null && req.password != null));
@@ -111,11 +155,22 @@ public class AuthController {
             return ResponseEntity.status(401).body(Map.of("message", "Neispravan email ili lozinka"));
         }
 
+        // Throttle pre baze i BCrypt-a; IP klijenta iza nginx-a i Cloudflare-a (ClientAddressResolver)
+        String clientIp = clientAddress.resolve(request);
+        long retryAfter = loginThrottle.tryAttempt(clientIp, req.email);
+        if (retryAfter > 0) {
+            System.out.println("ERROR: Login throttled for " + clientIp);
+            return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(Map.of("message", "Previše pokušaja prijave. Molimo pokušajte ponovo kasnije."));
+        }
+
         Optional<User> userOpt = users.findByEmail(req.email);
         System.out.println("User found: " + userOpt.isPresent());
         
         if (userOpt.isEmpty()) {
             System.out.println("ERROR: User not found for email: " + req.email);
+            loginThrottle.recordFailure(req.email);
             return ResponseEntity.status(401).body(Map.of("message", "Neispravan email ili lozinka"));
         }
 
@@ -124,31 +179,70 @@ public class AuthController {
         System.out.println("User active: " + u.getIsActive());
         System.out.println("User role: " + u.getRole());
         
-        boolean passwordMatches = encoder.matches(req.password, u.getPasswordHash());
+        boolean passwordMatches;
+        try {
+            passwordMatches = hasher.matches(req.password, u.getPasswordHash());
+        } catch (PasswordHashingUnavailableException e) {
+            return hashingUnavailable(e);
+        }
         System.out.println("Password matches: " + passwordMatches);
         
         if (!passwordMatches) {
             System.out.println("ERROR: Password does not match");
+            loginThrottle.recordFailure(req.email);
             return ResponseEntity.status(401).body(Map.of("message", "Neispravan email ili lozinka"));
         }
+        loginThrottle.recordSuccess(req.email);
         
         if (u.getIsActive() == null || !u.getIsActive()) {
             System.out.println("ERROR: User account is inactive");
             return ResponseEntity.status(403).body(Map.of("message", "Korisnički nalog je deaktiviran"));
         }
 
-        // Update login activity
-        u.setLastLoginAt(Instant.now());
-        u.setLoginCount((u.getLoginCount() == null ? 0 : u.getLoginCount()) + 1);
-        users.save(u);
+        // Login activity se upisuje batch-em u pozadini (bez upisa u users po prijavi)
+        loginActivity.record(u.getId());
 
-        // Use user ID as subject (not email) for security - email can change
-        String token = jwt.generate(String.valueOf(u.getId()), Map.of("email", u.getEmail(), "role", u.getRole() != null ? u.getRole() : "USER"));
-        return ResponseEntity.ok(new AuthRes(token, u.getEmail()));
+        return ResponseEntity.ok(issueTokens(u));
+    }
+
+    /**
+     * Nov access token (i nov refresh token) na osnovu refresh tokena. Ovo je jedino mesto
+     * gde se status korisnika čita iz baze - jednom po isteku access tokena, ne po zahtevu.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshReq req) {
+        if (req == null || req.refreshToken == null || req.refreshToken.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Refresh token je obavezan"));
+        }
+
+        JwtService.VerifiedToken verified;
+        Long userId;
+        try {
+            verified = jwt.verify(req.refreshToken);
+            userId = Long.parseLong(verified.getSubject());
+        } catch (Exception e) {
+            return ResponseEntity.status(401).body(Map.of("message", "Sesija je istekla. Molimo ulogujte se ponovo."));
+        }
+        if (!verified.isRefresh()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Neispravan refresh token"));
+        }
+
+        Optional<User> userOpt = users.findById(userId);
+        if (userOpt.isEmpty() || userOpt.get().getIsActive() == null || !userOpt.get().getIsActive()) {
+            return ResponseEntity.status(401).body(Map.of("message", "Korisnički nalog nije aktivan"));
+        }
+
+        User u = userOpt.get();
+        // Deaktivacija, promena uloge ili reset lozinke povećavaju verziju i poništavaju sesiju
+        if (verified.getTokenVersion() == null || verified.getTokenVersion() != TokenRevocationList.versionOf(u)) {
+            return ResponseEntity.status(401).body(Map.of("message", "Sesija je istekla. Molimo ulogujte se ponovo."));
+        }
+
+        return ResponseEntity.ok(issueTokens(u));
     }
 
     @PostMapping("/forgot-password")
-    public ResponseEntity<?> forgotPassword(@RequestBody ForgotPasswordReq req) {
+    public ResponseEntity<?> forgotPassword(@RequestBody ForgotPasswordReq req, HttpServletRequest request) {
         if (req == null || req.email == null) {
             return ResponseEntity.badRequest().body(Map.of("message", "Email je obavezan"));
         }
@@ -168,34 +262,15 @@ public class AuthController {
             user.setPasswordResetToken(resetToken);
             user.setPasswordResetTokenExpiry(Instant.now().plusSeconds(3600)); // 1 sat
             
+            String resetUrl = frontendUrl + "/reset-password?token=" + resetToken;
             try {
-                users.save(user);
-                System.out.println("Reset token saved to database");
-                
-                // Pošalji email
-                String resetUrl = frontendUrl + "/reset-password?token=" + resetToken;
-                System.out.println("Sending email to: " + user.getEmail());
-                System.out.println("Reset URL: " + resetUrl);
-                
-                try {
-                    boolean emailSent = emailService.sendPasswordResetEmail(user.getEmail(), resetToken, resetUrl, frontendUrl);
-                    System.out.println("Email sent: " + emailSent);
-                    
-                    if (emailSent) {
-                        // Email je uspešno poslat
-                        System.out.println("SUCCESS: Email sent successfully");
-                        return ResponseEntity.ok(Map.of("message", "Link za reset lozinke je poslat na vašu email adresu. Proverite inbox i spam folder."));
-                    } else {
-                        // Email nije poslat (greška u slanju)
-                        System.out.println("ERROR: Email sending failed");
-                        return ResponseEntity.status(500).body(Map.of("message", "Greška pri slanju emaila. Molimo pokušajte ponovo kasnije."));
-                    }
-                } catch (Exception emailException) {
-                    // Ako email servis baca exception, loguj ali ne prekidaj proces
-                    System.err.println("ERROR in email service: " + emailException.getMessage());
-                    emailException.printStackTrace();
-                    return ResponseEntity.status(500).body(Map.of("message", "Greška pri slanju emaila. Molimo pokušajte ponovo kasnije."));
-                }
+                // Token i email u istoj transakciji; email šalje outbox worker u pozadini
+                transactionTemplate.executeWithoutResult(status -> {
+                    users.save(user);
+                    emailService.queuePasswordResetEmail(user.getEmail(), resetUrl, emailLocale(request));
+                });
+                System.out.println("Reset token saved, email queued for: " + user.getEmail());
+                return ResponseEntity.ok(Map.of("message", "Link za reset lozinke je poslat na vašu email adresu. Proverite inbox i spam folder."));
             } catch (Exception e) {
                 System.err.println("ERROR processing password reset: " + e.getMessage());
                 e.printStackTrace();
@@ -232,10 +307,15 @@ public class AuthController {
         }
 
         // Resetuj lozinku
-        user.setPasswordHash(encoder.encode(req.newPassword));
+        try {
+            user.setPasswordHash(hasher.encode(req.newPassword));
+        } catch (PasswordHashingUnavailableException e) {
+            return hashingUnavailable(e);
+        }
         user.setPasswordResetToken(null);
         user.setPasswordResetTokenExpiry(null);
-        users.save(user);
+        // Čuva korisnika i odjavljuje sve postojeće sesije
+        revocations.revokeAll(user);
 
         return ResponseEntity.ok(Map.of("message", "Lozinka je uspešno resetovana"));
     }
@@ -0,0 +1,73 @@
+package com.example.app.auth;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IP adresa klijenta za throttle prijave.
+ *
+ * Tomcat (server.forward-headers-strategy=native) već skida nginx sa lokalne/privatne adrese, ali
+ * posle njega ostaje Cloudflare edge: {@code getRemoteAddr()} je tada adresa Cloudflare-a, deljena
+ * sa mnogo pravih korisnika. Kada zahtev stiže sa adrese iz {@code app.auth.trusted-proxies},
+ * prava adresa se uzima iz {@code CF-Connecting-IP}; sa bilo koje druge adrese to zaglavlje se
+ * ignoriše, da klijent ne bi mogao sam da bira svoj IP.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private static final String CONNECTING_IP_HEADER = "CF-Connecting-IP";
+
+    private final List<IpAddressMatcher> trustedProxies;
+
+    public ClientAddressResolver(@Value("${app.auth.trusted-proxies:}") String trustedProxies) {
+        List<IpAddressMatcher> matchers = new ArrayList<>();
+        for (String range : trustedProxies.split(",")) {
+            String trimmed = range.trim();
+            if (!trimmed.isEmpty()) {
+                matchers.add(new IpAddressMatcher(trimmed));
+            }
+        }
+        this.trustedProxies = List.copyOf(matchers);
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (!isTrusted(remote)) {
+            return remote;
+        }
+        String connecting = request.getHeader(CONNECTING_IP_HEADER);
+        return isAddress(connecting) ? connecting.trim() : remote;
+    }
+
+    private boolean isTrusted(String address) {
+        for (IpAddressMatcher matcher : trustedProxies) {
+            if (matcher.matches(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Samo IPv4/IPv6 literal; ništa što bi moglo da se razrešava kao ime hosta
+    private static boolean isAddress(String value) {
+        if (value == null) {
+            return false;
+        }
+        String trimmed = value.trim();
+        if (trimmed.isEmpty() || trimmed.length() > 45) {
+            return false;
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (!(Character.digit(c, 16) >= 0 || c == '.' || c == ':')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.app.auth;
+
+import com.example.app.service.SlidingWindowLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Ograničava pokušaje prijave pre nego što se potroši BCrypt:
+ * <ul>
+ *   <li>po IP adresi se broji svaki pokušaj (bot koji proba mnogo naloga),</li>
+ *   <li>po email-u se broje samo neuspešni pokušaji, a uspešna prijava ih briše
+ *       (pogađanje lozinke jednog naloga, bez mogućnosti da se tuđi nalog zaključa uspešnim prijavama).</li>
+ * </ul>
+ */
+@Component
+public class LoginThrottle {
+
+    private final SlidingWindowLimiter<String> perIp;
+    private final SlidingWindowLimiter<String> perEmail;
+
+    public LoginThrottle(@Value("${app.auth.login-throttle.ip.max-attempts:20}") int ipMaxAttempts,
+                         @Value("${app.auth.login-throttle.ip.window-seconds:300}") long ipWindowSeconds,
+                         @Value("${app.auth.login-throttle.email.max-failures:5}") int emailMaxFailures,
+                         @Value("${app.auth.login-throttle.email.window-seconds:900}") long emailWindowSeconds) {
+        this.perIp = new SlidingWindowLimiter<>(ipMaxAttempts, ipWindowSeconds);
+        this.perEmail = new SlidingWindowLimiter<>(emailMaxFailures, emailWindowSeconds);
+    }
+
+    /**
+     * Beleži pokušaj sa IP adrese i proverava oba limita.
+     *
+     * @return 0 ako pokušaj sme da se obradi, inače broj sekundi za Retry-After
+     */
+    public long tryAttempt(String ip, String email) {
+        long emailWait = perEmail.retryAfter(normalize(email));
+        if (emailWait > 0) {
+            return emailWait;
+        }
+        return perIp.tryAcquire(ip);
+    }
+
+    public void recordFailure(String email) {
+        perEmail.tryAcquire(normalize(email));
+    }
+
+    public void recordSuccess(String email) {
+        perEmail.reset(normalize(email));
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.login-throttle.eviction-interval-millis:60000}")
+    public void evictIdle() {
+        perIp.evictIdle();
+        perEmail.evictIdle();
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
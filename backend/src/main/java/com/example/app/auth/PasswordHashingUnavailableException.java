@@ -0,0 +1,21 @@
+package com.example.app.auth;
+
+/**
+ * Heširanje lozinke nije ni pokušano: izvršilac za BCrypt je zauzet i red je pun
+ * (ili se predugo čekalo). Kontroler ovo mapira na 503 sa Retry-After zaglavljem.
+ */
+public class PasswordHashingUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.app.blog;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Verzija objavljenog blog sadržaja, osnova za ETag/Last-Modified javnog blog API-ja.
+ *
+ * Verzija je heš otiska objavljenih postova iz baze (broj, id-evi, poslednja izmena), pa je
+ * ista na svim instancama i posle restarta. {@code AdminBlogController} poziva {@link #refresh()}
+ * posle svake izmene; periodično osvežavanje hvata izmene sa drugih instanci.
+ * Last-Modified je trenutak kada je ova instanca primetila promenu (nikad ne ide unazad).
+ */
+@Component
+public class BlogCorpusVersion {
+
+    private final BlogPostRepository blogPostRepository;
+    private volatile Stamp current = new Stamp(0L, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+
+    public BlogCorpusVersion(BlogPostRepository blogPostRepository) {
+        this.blogPostRepository = blogPostRepository;
+    }
+
+    public Stamp current() {
+        return current;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.blog.version.reload-interval-millis:30000}",
+               initialDelayString = "${app.blog.version.reload-interval-millis:30000}")
+    public synchronized void refresh() {
+        long version;
+        try {
+            version = fingerprint();
+        } catch (Exception e) {
+            System.err.println("Verzija bloga nije osvežena: " + e.getMessage());
+            return;
+        }
+        if (version != current.version) {
+            current = new Stamp(version, Instant.now().truncatedTo(ChronoUnit.SECONDS));
+        }
+    }
+
+    private long fingerprint() {
+        List<Object[]> rows = blogPostRepository.publishedFingerprint();
+        Object[] row = rows.isEmpty() ? new Object[3] : rows.get(0);
+        long count = row[0] != null ? ((Number) row[0]).longValue() : 0L;
+        long idSum = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+        long modified = epochMillis(row[2]);
+        long hash = 1125899906842597L;
+        hash = 31 * hash + count;
+        hash = 31 * hash + idSum;
+        hash = 31 * hash + modified;
+        // 0 je rezervisana za "još nije učitano"
+        return hash != 0 ? hash : 1;
+    }
+
+    // Vremenska kolona iz agregatnog/projekcionog upita (Instant ili Timestamp, zavisno od drajvera)
+    static long epochMillis(Object value) {
+        if (value instanceof Instant instant) {
+            return instant.toEpochMilli();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.getTime();
+        }
+        return 0L;
+    }
+
+    public static final class Stamp {
+        private final long version;
+        private final Instant lastModified;
+
+        Stamp(long version, Instant lastModified) {
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+
+        public long getVersion() { return version; }
+        public Instant getLastModified() { return lastModified; }
+    }
+}
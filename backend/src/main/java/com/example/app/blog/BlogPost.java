@@ -1,8 +1,11 @@
 package com.example.app.blog;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.Instant;
 
+// UPDATE sadrži samo izmenjene kolone, pa izmena posta ne pregazi view_count koji upisuje BlogViewCounter
+@DynamicUpdate
 @Entity
 @Table(name = "blog_posts")
 public class BlogPost {
@@ -13,29 +13,42 @@ import java.util.Optional;
 @RequestMapping("/api/blog")
 public class BlogPostController {
 
+    // Gornja granica veličine stranice, da ključevi keša ostanu ograničeni
+    private static final int MAX_PAGE_SIZE = 50;
+    private static final int MAX_QUERY_LENGTH = 200;
+
     private final BlogPostRepository blogPostRepository;
+    private final BlogResponseCache responseCache;
+    private final BlogViewCounter viewCounter;
+    private final BlogSearchIndex searchIndex;
 
-    public BlogPostController(BlogPostRepository blogPostRepository) {
+    public BlogPostController(BlogPostRepository blogPostRepository, BlogResponseCache responseCache,
+                              BlogViewCounter viewCounter, BlogSearchIndex searchIndex) {
         this.blogPostRepository = blogPostRepository;
+        this.responseCache = responseCache;
+        this.viewCounter = viewCounter;
+        this.searchIndex = searchIndex;
     }
 
     @GetMapping
     public ResponseEntity<?> getPublishedPosts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
+        int pageNumber = Math.max(0, page);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         try {
-            System.out.println("=== GET /api/blog ===");
-            System.out.println("Page: " + page + ", Size: " + size);
-            Pageable pageable = PageRequest.of(page, size);
-            Page<BlogPost> posts = blogPostRepository.findByStatusOrderByPublishedAtDesc("PUBLISHED", pageable);
-            System.out.println("Found " + posts.getTotalElements() + " published blog posts");
-            System.out.println("Returning " + posts.getContent().size() + " posts on this page");
-            return ResponseEntity.ok(Map.of(
-                "posts", posts.getContent(),
-                "totalPages", posts.getTotalPages(),
-                "totalElements", posts.getTotalElements(),
-                "currentPage", page
-            ));
+            return responseCache.respond("list:" + pageNumber + ":" + pageSize, () -> {
+                Pageable pageable = PageRequest.of(pageNumber, pageSize);
+                Page<BlogPostSummary> posts = blogPostRepository.findSummariesByStatusOrderByPublishedAtDesc("PUBLISHED", pageable);
+                Map<String, Object> body = Map.of(
+                    "posts", posts.getContent(),
+                    "totalPages", posts.getTotalPages(),
+                    "totalElements", posts.getTotalElements(),
+                    "currentPage", pageNumber
+                );
+                // Stranica iza poslednje je prazna; ne kešira se, da ?page=1..N ne bi punio keš
+                return pageNumber > 0 && pageNumber >= posts.getTotalPages() ? BlogResponseCache.uncached(body) : body;
+            });
         } catch (Exception e) {
             System.err.println("ERROR in getPublishedPosts: " + e.getMessage());
             e.printStackTrace();
@@ -43,23 +56,39 @@ public class BlogPostController {
         }
     }
 
+    // Pretraga objavljenih postova; nextCursor iz odgovora se šalje kao cursor za sledeću stranicu
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor) {
+        if (query.length() > MAX_QUERY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Upit je predugačak"));
+        }
+        try {
+            return ResponseEntity.ok(searchIndex.search(query, Math.max(1, Math.min(size, MAX_PAGE_SIZE)), cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("ERROR in search: " + e.getMessage());
+            return ResponseEntity.status(500).body(Map.of("message", "Greška pri pretrazi blogova"));
+        }
+    }
+
     @GetMapping("/{slug}")
     public ResponseEntity<?> getPostBySlug(@PathVariable String slug) {
         try {
-            Optional<BlogPost> postOpt = blogPostRepository.findBySlug(slug);
-            if (postOpt.isEmpty() || !"PUBLISHED".equals(postOpt.get().getStatus())) {
-                return ResponseEntity.notFound().build();
-            }
-
-            BlogPost post = postOpt.get();
-            // Increment view count
-            post.setViewCount((post.getViewCount() == null ? 0 : post.getViewCount()) + 1);
-            blogPostRepository.save(post);
-
-            return ResponseEntity.ok(post);
+            // Čisto čitanje: pregled se broji u memoriji (i kada klijent dobije 304), a u bazu ga upisuje flush.
+            // Telo nosi broj pregleda iz trenutka keširanja i važi dok se blog ne izmeni.
+            return responseCache.respond("post:" + slug, () -> {
+                Optional<BlogPost> postOpt = blogPostRepository.findBySlug(slug);
+                if (postOpt.isEmpty() || !"PUBLISHED".equals(postOpt.get().getStatus())) {
+                    return null;
+                }
+                return postOpt.get();
+            }, viewCounter::record);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("message", "Greška pri učitavanju bloga"));
         }
     }
 }
-
@@ -6,19 +6,37 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface BlogPostRepository extends JpaRepository<BlogPost, Long> {
+    // Liste vraćaju BlogPostSummary (bez content kolone); ceo post se učitava samo za detalj
+    String SUMMARY = "SELECT new com.example.app.blog.BlogPostSummary(b.id, b.slug, b.title, b.excerpt, b.featuredImage, " +
+                     "b.status, b.publishedAt, b.createdAt, b.viewCount) FROM BlogPost b ";
+
     Optional<BlogPost> findBySlug(String slug);
     
-    Page<BlogPost> findByStatusOrderByPublishedAtDesc(String status, Pageable pageable);
-    
-    Page<BlogPost> findByStatusOrderByCreatedAtDesc(String status, Pageable pageable);
+    @Query(value = SUMMARY + "WHERE b.status = :status ORDER BY b.publishedAt DESC",
+           countQuery = "SELECT COUNT(b) FROM BlogPost b WHERE b.status = :status")
+    Page<BlogPostSummary> findSummariesByStatusOrderByPublishedAtDesc(@Param("status") String status, Pageable pageable);
     
-    @Query("SELECT b FROM BlogPost b WHERE b.status = :status ORDER BY b.publishedAt DESC")
-    Page<BlogPost> findPublishedPosts(@Param("status") String status, Pageable pageable);
+    @Query(value = SUMMARY + "WHERE b.status = :status ORDER BY b.createdAt DESC",
+           countQuery = "SELECT COUNT(b) FROM BlogPost b WHERE b.status = :status")
+    Page<BlogPostSummary> findSummariesByStatusOrderByCreatedAtDesc(@Param("status") String status, Pageable pageable);
+
+    @Query(value = SUMMARY, countQuery = "SELECT COUNT(b) FROM BlogPost b")
+    Page<BlogPostSummary> findAllSummaries(Pageable pageable);
     
-    @Query("SELECT b FROM BlogPost b WHERE b.status = :status AND (b.title LIKE %:search% OR b.content LIKE %:search%)")
-    Page<BlogPost> findByStatusAndSearch(@Param("status") String status, @Param("search") String search, Pageable pageable);
-}
+    // Otisak objavljenog sadržaja [broj, zbir id-eva, poslednja izmena]; menja se sa svakim objavljivanjem, izmenom i brisanjem
+    @Query("SELECT COUNT(b), COALESCE(SUM(b.id), 0), MAX(COALESCE(b.updatedAt, b.publishedAt, b.createdAt)) " +
+           "FROM BlogPost b WHERE b.status = 'PUBLISHED'")
+    List<Object[]> publishedFingerprint();
+
+    // [id, poslednja izmena] objavljenih postova; indeks pretrage ponovo obrađuje samo izmenjene
+    @Query("SELECT b.id, COALESCE(b.updatedAt, b.publishedAt, b.createdAt) FROM BlogPost b WHERE b.status = 'PUBLISHED'")
+    List<Object[]> findPublishedModifications();
 
+    @Query(value = SUMMARY + "WHERE b.status = :status AND (b.title LIKE %:search% OR b.content LIKE %:search%)",
+           countQuery = "SELECT COUNT(b) FROM BlogPost b WHERE b.status = :status AND (b.title LIKE %:search% OR b.content LIKE %:search%)")
+    Page<BlogPostSummary> findSummariesByStatusAndSearch(@Param("status") String status, @Param("search") String search, Pageable pageable);
+}
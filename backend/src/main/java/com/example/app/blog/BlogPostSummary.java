@@ -0,0 +1,44 @@
+package com.example.app.blog;
+
+import java.time.Instant;
+
+/**
+ * Post za prikaz u listi: sve osim {@code content} kolone, koja se učitava samo za detalj posta.
+ * Pravi se direktno u JPQL upitu ({@code SELECT new ...}), bez učitavanja entiteta.
+ */
+public class BlogPostSummary {
+
+    private final Long id;
+    private final String slug;
+    private final String title;
+    private final String excerpt;
+    private final String featuredImage;
+    private final String status;
+    private final Instant publishedAt;
+    private final Instant createdAt;
+    private Integer viewCount;
+
+    public BlogPostSummary(Long id, String slug, String title, String excerpt, String featuredImage,
+                           String status, Instant publishedAt, Instant createdAt, Integer viewCount) {
+        this.id = id;
+        this.slug = slug;
+        this.title = title;
+        this.excerpt = excerpt;
+        this.featuredImage = featuredImage;
+        this.status = status;
+        this.publishedAt = publishedAt;
+        this.createdAt = createdAt;
+        this.viewCount = viewCount;
+    }
+
+    public Long getId() { return id; }
+    public String getSlug() { return slug; }
+    public String getTitle() { return title; }
+    public String getExcerpt() { return excerpt; }
+    public String getFeaturedImage() { return featuredImage; }
+    public String getStatus() { return status; }
+    public Instant getPublishedAt() { return publishedAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Integer getViewCount() { return viewCount; }
+    public void setViewCount(Integer viewCount) { this.viewCount = viewCount; }
+}
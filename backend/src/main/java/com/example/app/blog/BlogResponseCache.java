@@ -0,0 +1,180 @@
+package com.example.app.blog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Keš već serijalizovanih JSON odgovora javnog blog API-ja, vezan za {@link BlogCorpusVersion}.
+ *
+ * Odgovor se serijalizuje jednom po verziji i ključu (npr. stranica i veličina), a svaki sledeći
+ * zahtev dobija iste bajtove sa jakim ETag-om (verzija + CRC tela), Last-Modified i Cache-Control.
+ * Uslovni GET (If-None-Match / If-Modified-Since) Spring MVC tada završava kao 304 bez tela.
+ * Kada se verzija promeni, stari unosi se više ne koriste. Keš je LRU sa najviše
+ * {@code max-entries} unosa, pa retko traženi ključevi ne istiskuju stalno korišćene stranice.
+ */
+@Component
+public class BlogResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final BlogCorpusVersion corpusVersion;
+    private final int maxEntries;
+    private final CacheControl cacheControl;
+
+    private final LinkedHashMap<String, CachedResponse> entries;
+    private long entriesVersion;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BlogResponseCache(ObjectMapper objectMapper,
+                             BlogCorpusVersion corpusVersion,
+                             @Value("${app.blog.cache.max-entries:1000}") int maxEntries,
+                             @Value("${app.blog.cache.max-age-seconds:30}") long maxAgeSeconds,
+                             @Value("${app.blog.cache.stale-while-revalidate-seconds:300}") long staleWhileRevalidateSeconds) {
+        this.objectMapper = objectMapper;
+        this.corpusVersion = corpusVersion;
+        this.maxEntries = Math.max(1, maxEntries);
+        // accessOrder=true -> LRU redosled
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                if (size() > BlogResponseCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+            .cachePublic()
+            .staleWhileRevalidate(Duration.ofSeconds(staleWhileRevalidateSeconds));
+    }
+
+    public ResponseEntity<?> respond(String key, Supplier<Object> loader) throws JsonProcessingException {
+        return respond(key, loader, null);
+    }
+
+    /**
+     * Telo koje loader vraća kroz ovo se šalje normalno, ali se ne kešira
+     * (npr. prazna stranica iza poslednje, da nasumični brojevi stranica ne pune keš).
+     */
+    public static Object uncached(Object body) {
+        return new Uncached(body);
+    }
+
+    /**
+     * Vraća keširan odgovor za {@code key}, ili ga pravi iz {@code loader}-a.
+     * Ako loader vrati {@code null} (npr. post ne postoji), vraća se 404 i ništa se ne kešira;
+     * telo umotano u {@link #uncached} se vraća, ali se ne kešira.
+     * Kada je telo jedan {@link BlogPost}, {@code onPostServed} dobija njegov id (i pri pogotku keša).
+     */
+    public ResponseEntity<?> respond(String key, Supplier<Object> loader, LongConsumer onPostServed) throws JsonProcessingException {
+        // Verzija se čita pre učitavanja: ako se promeni u međuvremenu, unos je odmah zastareo
+        BlogCorpusVersion.Stamp stamp = corpusVersion.current();
+        CachedResponse cached;
+        synchronized (entries) {
+            if (stamp.getVersion() != entriesVersion) {
+                entries.clear();
+                entriesVersion = stamp.getVersion();
+            }
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.version == stamp.getVersion()) {
+            hits.increment();
+            notifyPost(cached, onPostServed);
+            return toResponse(cached, stamp);
+        }
+
+        misses.increment();
+        Object body = loader.get();
+        if (body == null) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean cacheable = !(body instanceof Uncached);
+        if (!cacheable) {
+            body = ((Uncached) body).body;
+        }
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        cached = new CachedResponse(stamp.getVersion(), bytes,
+            "\"" + Long.toHexString(stamp.getVersion()) + "-" + Long.toHexString(crc.getValue()) + "\"",
+            body instanceof BlogPost post ? post.getId() : null);
+        if (cacheable) {
+            synchronized (entries) {
+                // Verzija se mogla promeniti dok se učitavalo - takav unos se ne upisuje
+                if (entriesVersion == stamp.getVersion()) {
+                    entries.put(key, cached);
+                }
+            }
+        }
+        notifyPost(cached, onPostServed);
+        return toResponse(cached, stamp);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("version", Long.toHexString(corpusVersion.current().getVersion()));
+        stats.put("lastModified", corpusVersion.current().getLastModified().toString());
+        synchronized (entries) {
+            stats.put("entries", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private static void notifyPost(CachedResponse cached, LongConsumer onPostServed) {
+        if (onPostServed != null && cached.postId != null) {
+            onPostServed.accept(cached.postId);
+        }
+    }
+
+    private ResponseEntity<byte[]> toResponse(CachedResponse cached, BlogCorpusVersion.Stamp stamp) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(cached.etag)
+            .lastModified(stamp.getLastModified())
+            .cacheControl(cacheControl)
+            .body(cached.body);
+    }
+
+    private static final class Uncached {
+        final Object body;
+
+        Uncached(Object body) {
+            this.body = body;
+        }
+    }
+
+    private static final class CachedResponse {
+        final long version;
+        final byte[] body;
+        final String etag;
+        final Long postId;
+
+        CachedResponse(long version, byte[] body, String etag, Long postId) {
+            this.version = version;
+            this.body = body;
+            this.etag = etag;
+            this.postId = postId;
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.app.blog;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Pretraga objavljenih blog postova kroz invertovani indeks u memoriji.
+ *
+ * Naslov i tekst (bez HTML-a) se svode preko {@link SerbianFolding} i dele na termine; za svaki
+ * termin indeks drži listu postova sa brojem pojavljivanja. Upit traži postove koji sadrže sve
+ * termine (poslednji može biti početak reči, za pretragu dok se kuca), rangira ih BM25 formulom
+ * sa naslovom kao jačim poljem i vraća označene odlomke. Posao po upitu zavisi od broja pogodaka,
+ * ne od veličine arhive.
+ *
+ * Indeks je nepromenljiv snimak koji se menja atomski. Kada se verzija bloga
+ * ({@link BlogCorpusVersion}) promeni, ponovo se obrađuju samo izmenjeni postovi.
+ */
+@Component
+public class BlogSearchIndex {
+
+    private static final int TITLE_BOOST = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int SNIPPET_LEAD = 60;
+
+    private static final Pattern SCRIPT_OR_STYLE = Pattern.compile("(?is)<(script|style)[^>]*>.*?</\\1>");
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final BlogPostRepository blogPostRepository;
+    private final BlogCorpusVersion corpusVersion;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), 0L);
+    // Verzija za koju je sinhronizacija poslednji put pokušana (da pretraga ne ponavlja neuspeli pokušaj)
+    private volatile long attemptedVersion;
+
+    private final LongAdder searches = new LongAdder();
+
+    public BlogSearchIndex(BlogPostRepository blogPostRepository, BlogCorpusVersion corpusVersion) {
+        this.blogPostRepository = blogPostRepository;
+        this.corpusVersion = corpusVersion;
+    }
+
+    /**
+     * Usklađuje indeks sa bazom: novi i izmenjeni postovi se ponovo obrađuju, uklonjeni brišu.
+     */
+    @Scheduled(fixedDelayString = "${app.blog.search.sync-interval-millis:30000}")
+    public synchronized void sync() {
+        // Verzija se čita pre upita: izmena u međuvremenu izaziva novu sinhronizaciju
+        long version = corpusVersion.current().getVersion();
+        attemptedVersion = version;
+        Snapshot current = snapshot;
+        try {
+            Map<Long, Long> modifications = new HashMap<>();
+            for (Object[] row : blogPostRepository.findPublishedModifications()) {
+                modifications.put(((Number) row[0]).longValue(), BlogCorpusVersion.epochMillis(row[1]));
+            }
+
+            Map<Long, Doc> docs = new HashMap<>();
+            List<Long> changed = new ArrayList<>();
+            for (Map.Entry<Long, Long> entry : modifications.entrySet()) {
+                Doc doc = current.docs.get(entry.getKey());
+                if (doc != null && doc.modified == entry.getValue()) {
+                    docs.put(doc.id, doc);
+                } else {
+                    changed.add(entry.getKey());
+                }
+            }
+            if (changed.isEmpty() && docs.size() == current.docs.size()) {
+                if (current.version != version) {
+                    snapshot = new Snapshot(current, version);
+                }
+                return;
+            }
+
+            for (BlogPost post : blogPostRepository.findAllById(changed)) {
+                if ("PUBLISHED".equals(post.getStatus())) {
+                    docs.put(post.getId(), Doc.of(post, modifications.get(post.getId())));
+                }
+            }
+            snapshot = new Snapshot(docs, version);
+            System.out.println("Indeks pretrage bloga: " + docs.size() + " postova (" + changed.size() + " ponovo obrađeno)");
+        } catch (Exception e) {
+            System.err.println("Indeks pretrage bloga nije osvežen: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rangirana pretraga sa keyset stranicama: {@code cursor} je {@code nextCursor} prethodne
+     * stranice, pa nove objave ne pomeraju rezultate između stranica.
+     *
+     * @throws IllegalArgumentException ako kursor nije ispravan
+     */
+    public Map<String, Object> search(String query, int size, String cursor) {
+        searches.increment();
+        long version = corpusVersion.current().getVersion();
+        if (snapshot.version != version && attemptedVersion != version) {
+            sync();
+        }
+        Snapshot index = snapshot;
+        Cursor after = cursor != null && !cursor.isBlank() ? Cursor.parse(cursor) : null;
+
+        List<String> terms = queryTerms(query);
+        String prefix = null;
+        if (!terms.isEmpty() && !Character.isWhitespace(query.charAt(query.length() - 1))
+                && terms.get(terms.size() - 1).length() >= MIN_PREFIX_LENGTH) {
+            prefix = terms.get(terms.size() - 1);
+        }
+
+        List<Hit> hits = index.match(terms, prefix);
+        hits.sort(Hit.ORDER);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        Hit last = null;
+        boolean hasMore = false;
+        for (Hit hit : hits) {
+            if (after != null && !after.isBefore(hit)) {
+                continue;
+            }
+            if (results.size() == size) {
+                hasMore = true;
+                break;
+            }
+            results.add(toResult(hit, terms, prefix));
+            last = hit;
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("query", query);
+        response.put("results", results);
+        response.put("total", hits.size());
+        response.put("nextCursor", hasMore ? new Cursor(last.score, last.doc.id).toString() : null);
+        return response;
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot index = snapshot;
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("posts", index.docs.size());
+        stats.put("terms", index.postings.size());
+        stats.put("version", Long.toHexString(index.version));
+        stats.put("searches", searches.sum());
+        return stats;
+    }
+
+    private static Map<String, Object> toResult(Hit hit, List<String> terms, String prefix) {
+        Doc doc = hit.doc;
+        Set<String> exact = new HashSet<>(terms);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", doc.id);
+        result.put("slug", doc.slug);
+        result.put("title", doc.title);
+        result.put("excerpt", doc.excerpt);
+        result.put("featuredImage", doc.featuredImage);
+        result.put("publishedAt", doc.publishedAt);
+        result.put("score", Math.round(hit.score * 1000.0) / 1000.0);
+        // HTML: tekst je escape-ovan, pogoci su u <mark>
+        result.put("titleHighlight", highlight(doc.title, exact, prefix, false));
+        result.put("snippet", highlight(doc.text, exact, prefix, true));
+        return result;
+    }
+
+    private static List<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (Token token : tokens(SerbianFolding.fold(query))) {
+            terms.add(token.term);
+            if (terms.size() == MAX_QUERY_TERMS) {
+                break;
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    // Termini svedenog teksta: nizovi slova i cifara, bez jednoslovnih reči (i, u, a...)
+    private static List<Token> tokens(String folded) {
+        List<Token> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean tokenChar = i < folded.length() && SerbianFolding.isTokenChar(folded.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                if (i - start > 1 || Character.isDigit(folded.charAt(start))) {
+                    tokens.add(new Token(folded.substring(start, i), start, i));
+                }
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Escape-uje tekst i označava pogotke sa {@code <mark>}. Za odlomak ({@code window}) vraća
+     * oko {@value #SNIPPET_LENGTH} znakova počevši malo pre prvog pogotka.
+     */
+    private static String highlight(String text, Set<String> exact, String prefix, boolean window) {
+        if (text.isEmpty()) {
+            return "";
+        }
+        SerbianFolding.Folded folded = SerbianFolding.fold(text, true);
+        List<int[]> ranges = new ArrayList<>();
+        for (Token token : tokens(folded.text)) {
+            if (exact.contains(token.term) || (prefix != null && token.term.startsWith(prefix))) {
+                ranges.add(new int[] { folded.offsets[token.start], folded.offsets[token.end] });
+            }
+        }
+
+        int from = 0;
+        int to = text.length();
+        if (window) {
+            if (!ranges.isEmpty() && ranges.get(0)[0] > SNIPPET_LEAD) {
+                from = ranges.get(0)[0] - SNIPPET_LEAD;
+                // Počni od cele reči
+                int space = text.indexOf(' ', from);
+                if (space >= 0 && space < ranges.get(0)[0]) {
+                    from = space + 1;
+                }
+            }
+            if (to - from > SNIPPET_LENGTH) {
+                to = from + SNIPPET_LENGTH;
+                int space = text.lastIndexOf(' ', to);
+                if (space > from + SNIPPET_LENGTH / 2) {
+                    to = space;
+                }
+            }
+        }
+
+        StringBuilder out = new StringBuilder(to - from + 32);
+        if (from > 0) {
+            out.append("…");
+        }
+        int position = from;
+        for (int[] range : ranges) {
+            int start = Math.max(range[0], from);
+            int end = Math.min(range[1], to);
+            if (start >= end || start < position) {
+                continue;
+            }
+            out.append(escape(text.substring(position, start)));
+            out.append("<mark>").append(escape(text.substring(start, end))).append("</mark>");
+            position = end;
+        }
+        out.append(escape(text.substring(position, to)));
+        if (to < text.length()) {
+            out.append("…");
+        }
+        return out.toString();
+    }
+
+    // Samo <, >, &, " i ' - naša slova ostaju kakva jesu
+    private static String escape(String text) {
+        return HtmlUtils.htmlEscape(text, "UTF-8");
+    }
+
+    private static String htmlToText(String html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+        String text = SCRIPT_OR_STYLE.matcher(html).replaceAll(" ");
+        text = TAG.matcher(text).replaceAll(" ");
+        text = HtmlUtils.htmlUnescape(text);
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    private static final class Doc {
+        final long id;
+        final String slug;
+        final String title;
+        final String excerpt;
+        final String featuredImage;
+        final Instant publishedAt;
+        final String text;
+        final long modified;
+        // termin -> [u naslovu, u tekstu]
+        final Map<String, int[]> termCounts;
+        final int length;
+
+        private Doc(BlogPost post, String text, long modified, Map<String, int[]> termCounts, int length) {
+            this.id = post.getId();
+            this.slug = post.getSlug();
+            this.title = post.getTitle() != null ? post.getTitle() : "";
+            this.excerpt = post.getExcerpt();
+            this.featuredImage = post.getFeaturedImage();
+            this.publishedAt = post.getPublishedAt();
+            this.text = text;
+            this.modified = modified;
+            this.termCounts = termCounts;
+            this.length = length;
+        }
+
+        static Doc of(BlogPost post, long modified) {
+            String text = htmlToText(post.getContent());
+            Map<String, int[]> termCounts = new HashMap<>();
+            List<Token> titleTokens = tokens(SerbianFolding.fold(post.getTitle() != null ? post.getTitle() : ""));
+            List<Token> textTokens = tokens(SerbianFolding.fold(text));
+            for (Token token : titleTokens) {
+                termCounts.computeIfAbsent(token.term, term -> new int[2])[0]++;
+            }
+            for (Token token : textTokens) {
+                termCounts.computeIfAbsent(token.term, term -> new int[2])[1]++;
+            }
+            return new Doc(post, text, modified, termCounts, TITLE_BOOST * titleTokens.size() + textTokens.size());
+        }
+    }
+
+    private static final class Posting {
+        final Doc doc;
+        final int weightedFrequency;
+
+        Posting(Doc doc, int[] counts) {
+            this.doc = doc;
+            this.weightedFrequency = TITLE_BOOST * counts[0] + counts[1];
+        }
+    }
+
+    private static final class Snapshot {
+        final Map<Long, Doc> docs;
+        final TreeMap<String, Posting[]> postings;
+        final double averageLength;
+        final long version;
+
+        Snapshot(Map<Long, Doc> docs, long version) {
+            Map<String, List<Posting>> lists = new HashMap<>();
+            long totalLength = 0;
+            for (Doc doc : docs.values()) {
+                totalLength += doc.length;
+                for (Map.Entry<String, int[]> entry : doc.termCounts.entrySet()) {
+                    lists.computeIfAbsent(entry.getKey(), term -> new ArrayList<>()).add(new Posting(doc, entry.getValue()));
+                }
+            }
+            TreeMap<String, Posting[]> postings = new TreeMap<>();
+            for (Map.Entry<String, List<Posting>> entry : lists.entrySet()) {
+                postings.put(entry.getKey(), entry.getValue().toArray(new Posting[0]));
+            }
+            this.docs = Map.copyOf(docs);
+            this.postings = postings;
+            this.averageLength = docs.isEmpty() ? 1.0 : Math.max(1.0, (double) totalLength / docs.size());
+            this.version = version;
+        }
+
+        // Isti sadržaj, nova verzija
+        Snapshot(Snapshot other, long version) {
+            this.docs = other.docs;
+            this.postings = other.postings;
+            this.averageLength = other.averageLength;
+            this.version = version;
+        }
+
+        /**
+         * Postovi koji sadrže sve termine, sa zbirom BM25 doprinosa. Za prefiks se uzima
+         * najbolji od termina koji njime počinju.
+         */
+        List<Hit> match(List<String> terms, String prefix) {
+            if (terms.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Map<Doc, Double>> perTerm = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Map<Doc, Double> scores = new HashMap<>();
+                Map<String, Posting[]> expansions = term.equals(prefix)
+                    ? postings.subMap(term, true, term + Character.MAX_VALUE, false)
+                    : (postings.containsKey(term) ? Map.of(term, postings.get(term)) : Map.of());
+                int expanded = 0;
+                for (Posting[] list : expansions.values()) {
+                    double idf = Math.log(1.0 + (docs.size() - list.length + 0.5) / (list.length + 0.5));
+                    for (Posting posting : list) {
+                        double tf = posting.weightedFrequency;
+                        double norm = K1 * (1.0 - B + B * posting.doc.length / averageLength);
+                        scores.merge(posting.doc, idf * tf * (K1 + 1.0) / (tf + norm), Math::max);
+                    }
+                    if (++expanded == MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                perTerm.add(scores);
+            }
+
+            // Presek kreće od najređeg termina
+            perTerm.sort(Comparator.comparingInt(Map::size));
+            List<Hit> hits = new ArrayList<>();
+            outer:
+            for (Map.Entry<Doc, Double> candidate : perTerm.get(0).entrySet()) {
+                double score = candidate.getValue();
+                for (int i = 1; i < perTerm.size(); i++) {
+                    Double other = perTerm.get(i).get(candidate.getKey());
+                    if (other == null) {
+                        continue outer;
+                    }
+                    score += other;
+                }
+                hits.add(new Hit(candidate.getKey(), score));
+            }
+            return hits;
+        }
+    }
+
+    private static final class Hit {
+        // Veći skor prvo, pa noviji id, da redosled (i kursor) bude jednoznačan
+        static final Comparator<Hit> ORDER = Comparator.comparingDouble((Hit hit) -> hit.score).reversed()
+            .thenComparing(Comparator.comparingLong((Hit hit) -> hit.doc.id).reversed());
+
+        final Doc doc;
+        final double score;
+
+        Hit(Doc doc, double score) {
+            this.doc = doc;
+            this.score = score;
+        }
+    }
+
+    private static final class Cursor {
+        final double score;
+        final long id;
+
+        Cursor(double score, long id) {
+            this.score = score;
+            this.id = id;
+        }
+
+        // Da li pogodak dolazi posle ovog kursora u redosledu Hit.ORDER
+        boolean isBefore(Hit hit) {
+            return hit.score < score || (hit.score == score && hit.doc.id < id);
+        }
+
+        static Cursor parse(String value) {
+            int dash = value.indexOf('-');
+            if (dash <= 0) {
+                throw new IllegalArgumentException("Neispravan kursor");
+            }
+            try {
+                double score = Double.longBitsToDouble(Long.parseUnsignedLong(value.substring(0, dash), 16));
+                return new Cursor(score, Long.parseLong(value.substring(dash + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Neispravan kursor");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(Double.doubleToLongBits(score)) + "-" + id;
+        }
+    }
+
+    private static final class Token {
+        final String term;
+        final int start;
+        final int end;
+
+        Token(String term, int start, int end) {
+            this.term = term;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.app.blog;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Brojanje pregleda blog postova bez upisa u bazu na svaki pregled.
+ *
+ * Pregled samo uvećava {@link LongAdder} posta u memoriji; zakazani flush upisuje razlike jednim
+ * batch-em relativnih UPDATE-a ({@code view_count = view_count + x}), bez učitavanja posta.
+ * Brojači se ne uklanjaju iz mape (postova je malo), pa {@code sumThenReset} ne gubi istovremena
+ * uvećanja. Admin pregled dodaje neupisane preglede preko {@link #applyPending(BlogPost)}.
+ */
+@Component
+public class BlogViewCounter {
+
+    private static final String UPDATE =
+        "UPDATE blog_posts SET view_count = COALESCE(view_count, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public BlogViewCounter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Samo memorija - bez pristupa bazi
+    public void record(long postId) {
+        pending.computeIfAbsent(postId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Dodaje neupisane preglede na entitet učitan za prikaz.
+     */
+    public BlogPost applyPending(BlogPost post) {
+        post.setViewCount(withPending(post.getId(), post.getViewCount()));
+        return post;
+    }
+
+    public BlogPostSummary applyPending(BlogPostSummary post) {
+        post.setViewCount(withPending(post.getId(), post.getViewCount()));
+        return post;
+    }
+
+    private Integer withPending(Long postId, Integer stored) {
+        LongAdder adder = postId != null ? pending.get(postId) : null;
+        long views = adder != null ? adder.sum() : 0L;
+        if (views <= 0) {
+            return stored;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (stored != null ? stored : 0) + views);
+    }
+
+    @Scheduled(fixedDelayString = "${app.blog.views.flush-interval-millis:10000}")
+    public synchronized void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long views = entry.getValue().sumThenReset();
+            if (views > 0) {
+                rows.add(new Object[] { views, entry.getKey() });
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE, rows);
+        } catch (Exception e) {
+            // Vrati razlike u memoriju za sledeći flush
+            System.err.println("Flush pregleda bloga nije uspeo (" + rows.size() + " postova): " + e.getMessage());
+            for (Object[] row : rows) {
+                pending.computeIfAbsent((Long) row[1], id -> new LongAdder()).add((Long) row[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
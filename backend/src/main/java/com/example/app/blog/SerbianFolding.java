@@ -0,0 +1,94 @@
+package com.example.app.blog;
+
+import java.text.Normalizer;
+
+/**
+ * Svođenje teksta na oblik za pretragu: mala slova, latinica bez dijakritika.
+ *
+ * č/ć → c, š → s, ž → z, đ → dj (kako se piše bez naših slova), ćirilica se preslovljava
+ * u latinicu, a ostala slova sa akcentima gube akcenat. Tako "cokolada", "čokolada"
+ * i "чоколада" daju isti termin. Uz rezultat se po potrebi pamti pozicija u originalu
+ * za svaki znak, da bi se pogoci mogli označiti u originalnom tekstu.
+ */
+final class SerbianFolding {
+
+    // Latin-1 Supplement i Latin Extended-A (À..ſ): slovo bez akcenta, izračunato jednom
+    private static final int TABLE_START = 0x00C0;
+    private static final String[] LATIN_TABLE = new String[0x0180 - TABLE_START];
+    // Srpska ćirilica (а..ш, ђ..џ)
+    private static final String[] CYRILLIC_TABLE = new String[0x0460 - 0x0400];
+
+    static {
+        for (int c = TABLE_START; c < 0x0180; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+            char base = Character.toLowerCase(decomposed.charAt(0));
+            LATIN_TABLE[c - TABLE_START] = base < 128 && Character.isLetter(base)
+                ? String.valueOf(base)
+                : String.valueOf(Character.toLowerCase((char) c));
+        }
+        LATIN_TABLE['đ' - TABLE_START] = "dj";
+        LATIN_TABLE['Đ' - TABLE_START] = "dj";
+
+        String cyrillic = "абвгдђежзијклљмнњопрстћуфхцчџш";
+        String[] latin = { "a", "b", "v", "g", "d", "dj", "e", "z", "z", "i", "j", "k", "l", "lj", "m",
+                           "n", "nj", "o", "p", "r", "s", "t", "c", "u", "f", "h", "c", "c", "dz", "s" };
+        for (int i = 0; i < cyrillic.length(); i++) {
+            char lower = cyrillic.charAt(i);
+            CYRILLIC_TABLE[lower - 0x0400] = latin[i];
+            CYRILLIC_TABLE[Character.toUpperCase(lower) - 0x0400] = latin[i];
+        }
+    }
+
+    private SerbianFolding() {
+    }
+
+    static String fold(String text) {
+        return fold(text, false).text;
+    }
+
+    static Folded fold(String text, boolean withOffsets) {
+        StringBuilder out = new StringBuilder(text.length() + 16);
+        int[] offsets = withOffsets ? new int[text.length() * 2 + 1] : null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String mapped = null;
+            if (c >= TABLE_START && c < 0x0180) {
+                mapped = LATIN_TABLE[c - TABLE_START];
+            } else if (c >= 0x0400 && c < 0x0460) {
+                mapped = CYRILLIC_TABLE[c - 0x0400];
+            }
+            if (mapped == null) {
+                if (offsets != null) {
+                    offsets[out.length()] = i;
+                }
+                out.append(Character.toLowerCase(c));
+                continue;
+            }
+            for (int j = 0; j < mapped.length(); j++) {
+                if (offsets != null) {
+                    offsets[out.length()] = i;
+                }
+                out.append(mapped.charAt(j));
+            }
+        }
+        if (offsets != null) {
+            offsets[out.length()] = text.length();
+        }
+        return new Folded(out.toString(), offsets);
+    }
+
+    static boolean isTokenChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    static final class Folded {
+        final String text;
+        // offsets[i] = pozicija u originalu za i-ti znak svedenog teksta; offsets[text.length()] = kraj originala
+        final int[] offsets;
+
+        Folded(String text, int[] offsets) {
+            this.text = text;
+            this.offsets = offsets;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.app.chat;
+
+/**
+ * Rezultat blokirajućeg OpenAI poziva: tekst odgovora i potrošnja tokena.
+ * {@code usage} je null kada ga upstream nije prijavio ili kada je rezultat deljen (single-flight).
+ */
+public final class ChatCompletion {
+
+    private final String content;
+    private final TokenUsage usage;
+
+    public ChatCompletion(String content, TokenUsage usage) {
+        this.content = content;
+        this.usage = usage;
+    }
+
+    public String getContent() { return content; }
+    public TokenUsage getUsage() { return usage; }
+}
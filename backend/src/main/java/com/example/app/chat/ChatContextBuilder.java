@@ -0,0 +1,96 @@
+package com.example.app.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sklapa poruke za OpenAI u okviru budžeta tokena: system prompt, rolling sažetak starijeg
+ * razgovora, pa najnovije nesažete poruke unazad dok ima mesta, i na kraju trenutna poruka.
+ *
+ * Kada nesažeti deo istorije preraste prag (tokeni ili broj poruka), zakazuje se osvežavanje
+ * sažetka, pa prompt ostaje približno iste veličine bez obzira na dužinu razgovora.
+ */
+@Component
+public class ChatContextBuilder {
+
+    private final ChatSummarizer summarizer;
+    private final int maxPromptTokens;
+    private final int summarizeAfterTokens;
+    private final int summarizeAfterMessages;
+
+    public ChatContextBuilder(ChatSummarizer summarizer,
+                              @Value("${app.chat.context.max-prompt-tokens:3000}") int maxPromptTokens,
+                              @Value("${app.chat.summary.trigger-tokens:1500}") int summarizeAfterTokens,
+                              @Value("${app.chat.summary.trigger-messages:20}") int summarizeAfterMessages) {
+        this.summarizer = summarizer;
+        this.maxPromptTokens = maxPromptTokens;
+        this.summarizeAfterTokens = summarizeAfterTokens;
+        this.summarizeAfterMessages = summarizeAfterMessages;
+    }
+
+    /**
+     * @param history poslednje poruke hronološki (bez trenutne), već ograničene brojem
+     */
+    public List<Map<String, String>> build(Long userId, String systemPrompt, List<ChatMessage> history, String userMessage) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        int used = TokenEstimator.estimateMessage(userMessage);
+
+        if (systemPrompt != null && !systemPrompt.trim().isEmpty()) {
+            messages.add(Map.of("role", "system", "content", systemPrompt));
+            used += TokenEstimator.estimateMessage(systemPrompt);
+        }
+
+        ChatSummary summary = summarizer.find(userId).orElse(null);
+        if (summary != null) {
+            String content = "Sažetak ranijeg razgovora sa korisnikom:\n" + summary.getSummary();
+            messages.add(Map.of("role", "system", "content", content));
+            used += TokenEstimator.estimateMessage(content);
+        }
+
+        // Od najnovije ka starijoj; prva poruka koja ne staje prekida niz da kontekst ostane povezan
+        List<Map<String, String>> selected = new ArrayList<>();
+        int unsummarizedTokens = 0;
+        int unsummarizedMessages = 0;
+        boolean budgetFull = false;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage msg = history.get(i);
+            if (summary != null && summary.covers(msg)) {
+                break;
+            }
+            // Validacija: proveri da li je role validan i da li postoji content
+            if (msg.getRole() == null || msg.getMessage() == null || msg.getMessage().trim().isEmpty()) {
+                continue;
+            }
+            String role = msg.getRole().toLowerCase();
+            // OpenAI prihvata samo "system", "user", "assistant"
+            if (!role.equals("user") && !role.equals("assistant") && !role.equals("system")) {
+                continue;
+            }
+            String content = msg.getMessage().trim();
+            int tokens = TokenEstimator.estimateMessage(content);
+            unsummarizedTokens += tokens;
+            unsummarizedMessages++;
+            if (!budgetFull && used + tokens <= maxPromptTokens) {
+                selected.add(Map.of("role", role, "content", content));
+                used += tokens;
+            } else {
+                budgetFull = true;
+            }
+        }
+        Collections.reverse(selected);
+        messages.addAll(selected);
+
+        // Dodaj trenutnu korisničku poruku na kraju
+        messages.add(Map.of("role", "user", "content", userMessage));
+
+        if (unsummarizedTokens > summarizeAfterTokens || unsummarizedMessages >= summarizeAfterMessages) {
+            summarizer.requestRefresh(userId);
+        }
+        return messages;
+    }
+}
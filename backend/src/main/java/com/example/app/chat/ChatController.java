@@ -1,149 +1,160 @@
 package com.example.app.chat;
 
 import com.example.app.user.User;
+import com.example.app.user.UserPrincipal;
 import com.example.app.user.UserRepository;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
 
-    private final ChatMessageRepository chatMessageRepository;
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
+    private final ChatMessageService chatMessageService;
     private final UserRepository userRepository;
-    private final WebClient webClient;
-    private final String openaiApiKey;
+    private final ChatRateLimiter rateLimiter;
+    private final ChatResponseCache responseCache;
+    private final OpenAIClient openAIClient;
+    private final ChatContextBuilder contextBuilder;
+    private final SystemPromptProvider systemPromptProvider;
+    private final ChatUsageTracker usageTracker;
+    private final ObjectMapper objectMapper;
+
+    // Najviše poruka koje se učitavaju kao kandidati za kontekst; koliko ulazi odlučuje budžet tokena
+    private static final int CONTEXT_MESSAGES = 40;
+
+    // Koliko dugo SSE konekcija sme da bude otvorena (generisanje + mreža)
+    private static final long STREAM_TIMEOUT_MILLIS = 120_000L;
+
+    // Istorija: podrazumevana i maksimalna veličina stranice, i veličina stranice pri streaming-u
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 50;
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+    private static final int HISTORY_STREAM_PAGE_SIZE = 200;
+
+    private static final String DAILY_QUOTA_MESSAGE =
+        "Dostigli ste dnevni limit za BioZen AI asistenta. Pokušajte ponovo sutra.";
 
     public ChatController(
-            ChatMessageRepository chatMessageRepository,
+            ChatMessageService chatMessageService,
             UserRepository userRepository,
-            @Value("${OPENAI_API_KEY:}") String openaiApiKey) {
-        this.chatMessageRepository = chatMessageRepository;
+            ChatRateLimiter rateLimiter,
+            ChatResponseCache responseCache,
+            OpenAIClient openAIClient,
+            ChatContextBuilder contextBuilder,
+            SystemPromptProvider systemPromptProvider,
+            ChatUsageTracker usageTracker,
+            ObjectMapper objectMapper) {
+        this.chatMessageService = chatMessageService;
         this.userRepository = userRepository;
-        this.openaiApiKey = openaiApiKey;
-        
-        this.webClient = WebClient.builder()
-                .baseUrl("https://api.openai.com/v1")
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + openaiApiKey)
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+        this.rateLimiter = rateLimiter;
+        this.responseCache = responseCache;
+        this.openAIClient = openAIClient;
+        this.contextBuilder = contextBuilder;
+        this.systemPromptProvider = systemPromptProvider;
+        this.usageTracker = usageTracker;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
-    public ResponseEntity<?> sendMessage(Authentication auth, @RequestBody ChatRequest request) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<?> sendMessage(UserPrincipal principal, @RequestBody ChatRequest request) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
 
-        if (openaiApiKey == null || openaiApiKey.isEmpty()) {
+        if (!openAIClient.isConfigured()) {
             return ResponseEntity.status(500).body(Map.of("message", "OpenAI API ključ nije konfigurisan"));
         }
 
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
-        }
+        Long userId = principal.getUserId();
 
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty() || userOpt.get().getIsActive() == null || !userOpt.get().getIsActive()) {
-            return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
-        }
-
-        User user = userOpt.get();
         String userMessage = request.message != null ? request.message.trim() : "";
         if (userMessage.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("message", "Poruka ne može biti prazna"));
         }
 
-        // Sačuvaj korisničku poruku
-        ChatMessage userChatMessage = new ChatMessage(userId, "user", userMessage);
-        chatMessageRepository.save(userChatMessage);
-
-        // Učitaj istoriju poruka za kontekst
-        List<ChatMessage> history = chatMessageRepository.findByUserIdOrderByCreatedAtAsc(userId);
-        
-        // Pripremi poruke za OpenAI (zadnjih 10 poruka za kontekst)
-        List<Map<String, String>> messages = new ArrayList<>();
-        
-        // Dodaj system message sa kontekstom korisnika
-        String systemPrompt = buildSystemPrompt(user);
-        if (systemPrompt != null && !systemPrompt.trim().isEmpty()) {
-            messages.add(Map.of("role", "system", "content", systemPrompt));
+        // Rate limiting pre bilo kakvog rada sa bazom
+        long retryAfter = rateLimiter.tryAcquire(userId);
+        if (retryAfter > 0) {
+            return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(Map.of(
+                    "message", 
+                    "Previše zahteva. Molimo sačekajte nekoliko minuta pre nego što pošaljete novu poruku."
+                ));
         }
-        
-        // Dodaj istoriju poruka (zadnjih 10)
-        List<ChatMessage> recentHistory = history.size() > 10 
-            ? history.subList(history.size() - 10, history.size())
-            : history;
-        
-        for (ChatMessage msg : recentHistory) {
-            // Validacija: proveri da li je role validan i da li postoji content
-            if (msg.getRole() != null && msg.getMessage() != null && !msg.getMessage().trim().isEmpty()) {
-                String role = msg.getRole().toLowerCase();
-                // OpenAI prihvata samo "system", "user", "assistant"
-                if (role.equals("user") || role.equals("assistant") || role.equals("system")) {
-                    messages.add(Map.of("role", role, "content", msg.getMessage().trim()));
-                }
-            }
+
+        if (!principal.isActive()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
         }
-        
-        // Dodaj trenutnu korisničku poruku na kraju
-        messages.add(Map.of("role", "user", "content", userMessage));
-
-        // Rate limiting: proveri koliko poruka je korisnik poslao u poslednjih 5 minuta
-        Instant fiveMinutesAgo = Instant.now().minus(5, ChronoUnit.MINUTES);
-        long recentMessages = chatMessageRepository.findByUserIdOrderByCreatedAtAsc(userId).stream()
-                .filter(msg -> msg.getRole().equals("user") && msg.getCreatedAt().isAfter(fiveMinutesAgo))
-                .count();
-        
-        if (recentMessages >= 10) {
-            return ResponseEntity.status(429).body(Map.of(
-                "message", 
-                "Previše zahteva. Molimo sačekajte nekoliko minuta pre nego što pošaljete novu poruku."
-            ));
+
+        // Profil je potreban za system prompt, a od prompt-a zavisi i da li sme da se koristi zajednički keš
+        Optional<User> userOpt = userRepository.findById(userId);
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
         }
+        String systemPrompt = buildSystemPrompt(userOpt.get());
+
+        // Često pitanje sa već poznatim odgovorom - bez poziva ka OpenAI
+        String cacheKey = sharedCacheKey(userId, systemPrompt, userMessage);
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            ChatMessage assistantChatMessage = chatMessageService.saveExchange(userId, userMessage, cached.get());
 
-        // Pozovi OpenAI API
+            Map<String, Object> responseMap = new HashMap<>();
+            responseMap.put("message", cached.get());
+            responseMap.put("id", assistantChatMessage.getId());
+            responseMap.put("cached", true);
+            return ResponseEntity.ok(responseMap);
+        }
+
+        // Dnevna kvota tokena (iz memorije; keširani odgovori gore ne troše tokene)
+        if (usageTracker.remainingToday(userId) <= 0) {
+            return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(usageTracker.secondsUntilReset()))
+                .body(Map.of("message", DAILY_QUOTA_MESSAGE));
+        }
+
+        // Transakcija 1: učitaj kontekst i sačuvaj korisničku poruku
+        List<ChatMessage> history = chatMessageService.beginTurn(userId, userMessage, CONTEXT_MESSAGES);
+        List<Map<String, String>> messages = buildOpenAIMessages(userId, systemPrompt, history, userMessage);
+        boolean shareable = isShareable(cacheKey, messages);
+
+        // Pozovi OpenAI API (identični zahtevi u letu dele jedan poziv) - bez otvorene transakcije
         try {
-            OpenAIRequest openaiRequest = new OpenAIRequest();
-            openaiRequest.model = "gpt-3.5-turbo";
-            openaiRequest.messages = messages;
-            openaiRequest.temperature = 0.7;
-            openaiRequest.maxTokens = 500;
-
-            OpenAIResponse response = webClient.post()
-                    .uri("/chat/completions")
-                    .bodyValue(openaiRequest)
-                    .retrieve()
-                    .onStatus(status -> status.value() == 429, clientResponse -> {
-                        throw new RuntimeException("OpenAI rate limit prekoračen. Molimo sačekajte nekoliko minuta.");
-                    })
-                    .bodyToMono(OpenAIResponse.class)
-                    .block();
-
-            if (response == null || response.choices == null || response.choices.isEmpty()) {
+            ChatCompletion completion = openAIClient.complete(messages);
+            usageTracker.record(userId, completion.getUsage());
+            String assistantMessage = completion.getContent();
+            if (assistantMessage == null) {
                 return ResponseEntity.status(500).body(Map.of("message", "Greška pri komunikaciji sa OpenAI"));
             }
 
-            String assistantMessage = response.choices.get(0).message.content;
+            if (shareable) {
+                responseCache.put(cacheKey, assistantMessage);
+            }
 
-            // Sačuvaj odgovor asistenta
-            ChatMessage assistantChatMessage = new ChatMessage(userId, "assistant", assistantMessage);
-            chatMessageRepository.save(assistantChatMessage);
+            // Transakcija 2: sačuvaj odgovor asistenta
+            ChatMessage assistantChatMessage = chatMessageService.saveReply(userId, assistantMessage);
 
             Map<String, Object> responseMap = new HashMap<>();
             responseMap.put("message", assistantMessage);
@@ -151,6 +162,11 @@ public class ChatController {
 
             return ResponseEntity.ok(responseMap);
 
+        } catch (OpenAIUnavailableException e) {
+            // Bulkhead pun ili circuit breaker otvoren - odbijamo odmah, bez čekanja na upstream
+            return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("message", "BioZen asistent je trenutno preopterećen. Molimo pokušajte ponovo za nekoliko trenutaka."));
         } catch (WebClientResponseException e) {
             int statusCode = e.getStatusCode().value();
             String responseBody = e.getResponseBodyAsString();
@@ -207,112 +223,298 @@ public class ChatController {
         }
     }
 
+    /**
+     * Streaming varijanta {@link #sendMessage}: OpenAI se poziva sa stream=true, a svaki
+     * token delta se odmah prosleđuje browseru kao SSE "delta" događaj. Tomcat nit se
+     * oslobađa čim se emitter vrati; odgovor asistenta se čuva tek kada se stream završi.
+     */
+    @PostMapping("/stream")
+    public ResponseEntity<SseEmitter> streamMessage(UserPrincipal principal, @RequestBody ChatRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(errorEmitter("Niste autentifikovani"));
+        }
+
+        if (!openAIClient.isConfigured()) {
+            return ResponseEntity.status(500).body(errorEmitter("OpenAI API ključ nije konfigurisan"));
+        }
+
+        Long userId = principal.getUserId();
+
+        String userMessage = request.message != null ? request.message.trim() : "";
+        if (userMessage.isEmpty()) {
+            return ResponseEntity.badRequest().body(errorEmitter("Poruka ne može biti prazna"));
+        }
+
+        // Rate limiting pre bilo kakvog rada sa bazom
+        long retryAfter = rateLimiter.tryAcquire(userId);
+        if (retryAfter > 0) {
+            return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(errorEmitter(
+                    "Previše zahteva. Molimo sačekajte nekoliko minuta pre nego što pošaljete novu poruku."
+                ));
+        }
+
+        if (!principal.isActive()) {
+            return ResponseEntity.status(404).body(errorEmitter("Korisnik nije pronađen ili je deaktiviran"));
+        }
+
+        Optional<User> userOpt = userRepository.findById(userId);
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(404).body(errorEmitter("Korisnik nije pronađen ili je deaktiviran"));
+        }
+        String systemPrompt = buildSystemPrompt(userOpt.get());
+
+        String cacheKey = sharedCacheKey(userId, systemPrompt, userMessage);
+        Optional<String> cached = responseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            // Keširan odgovor šaljemo kao jedan delta + done, isti format kao pravi stream
+            ChatMessage assistantChatMessage = chatMessageService.saveExchange(userId, userMessage, cached.get());
+            SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+            sendEvent(emitter, "delta", Map.of("content", cached.get()));
+            sendEvent(emitter, "done", Map.of("id", assistantChatMessage.getId(), "message", cached.get(), "cached", true));
+            emitter.complete();
+            return ResponseEntity.ok().header(HttpHeaders.CACHE_CONTROL, "no-cache").body(emitter);
+        }
+
+        if (usageTracker.remainingToday(userId) <= 0) {
+            return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(usageTracker.secondsUntilReset()))
+                .body(errorEmitter(DAILY_QUOTA_MESSAGE));
+        }
+
+        // Transakcija 1: učitaj kontekst i sačuvaj korisničku poruku
+        List<ChatMessage> history = chatMessageService.beginTurn(userId, userMessage, CONTEXT_MESSAGES);
+        List<Map<String, String>> messages = buildOpenAIMessages(userId, systemPrompt, history, userMessage);
+        boolean shareable = isShareable(cacheKey, messages);
+
+        // Potrošnju javlja poslednji chunk; ako je upstream ne javi, procenjuje se lokalno
+        AtomicReference<TokenUsage> reportedUsage = new AtomicReference<>();
+        Flux<String> deltas;
+        try {
+            deltas = openAIClient.stream(messages, reportedUsage::set);
+        } catch (OpenAIUnavailableException e) {
+            return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(errorEmitter("BioZen asistent je trenutno preopterećen. Molimo pokušajte ponovo za nekoliko trenutaka."));
+        }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+        StringBuilder assembled = new StringBuilder();
+
+        // Callback-ovi se izvršavaju van Netty event loop-a jer čuvanje poruke blokira (JPA)
+        Disposable subscription = deltas
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(
+                    delta -> {
+                        assembled.append(delta);
+                        sendEvent(emitter, "delta", Map.of("content", delta));
+                    },
+                    error -> {
+                        usageTracker.record(userId, reportedUsage.get());
+                        log.warn("OpenAI stream za korisnika {} prekinut: {}", userId, error.getClass().getSimpleName());
+                        sendEvent(emitter, "error", Map.of("message", describeOpenAIError(error)));
+                        emitter.complete();
+                    },
+                    () -> {
+                        String assistantMessage = assembled.toString();
+                        usageTracker.record(userId, reportedUsage.get() != null
+                            ? reportedUsage.get() : estimateUsage(messages, assistantMessage));
+                        if (assistantMessage.isEmpty()) {
+                            sendEvent(emitter, "error", Map.of("message", "Greška pri komunikaciji sa OpenAI"));
+                            emitter.complete();
+                            return;
+                        }
+                        if (shareable) {
+                            responseCache.put(cacheKey, assistantMessage);
+                        }
+                        // Sačuvaj odgovor asistenta tek kada je ceo odgovor stigao
+                        ChatMessage assistantChatMessage = chatMessageService.saveReply(userId, assistantMessage);
+                        Map<String, Object> done = new HashMap<>();
+                        done.put("id", assistantChatMessage.getId());
+                        done.put("message", assistantMessage);
+                        sendEvent(emitter, "done", done);
+                        emitter.complete();
+                    });
+
+        // Ako klijent prekine konekciju, otkaži i upstream poziv
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header("X-Accel-Buffering", "no") // nginx ne sme da baferuje SSE
+                .body(emitter);
+    }
+
+    /**
+     * Bez parametara: cela istorija kao JSON niz (kompatibilno sa starim klijentima), ali se
+     * piše direktno u odgovor stranicu po stranicu umesto da se pravi lista mapa.
+     * Sa {@code limit} i/ili {@code before}: keyset stranica {@code {messages, nextBefore}},
+     * gde je {@code nextBefore} kursor za sledeću (stariju) stranicu ili null.
+     */
     @GetMapping("/history")
-    public ResponseEntity<?> getHistory(Authentication auth) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<?> getHistory(UserPrincipal principal,
+                                        @RequestParam(required = false) String before,
+                                        @RequestParam(required = false) Integer limit) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
 
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
+        if (!principal.isActive()) {
+            return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
         }
 
-        List<ChatMessage> messages = chatMessageRepository.findByUserIdOrderByCreatedAtAsc(userId);
-        List<Map<String, Object>> response = messages.stream()
-                .map(msg -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("id", msg.getId());
-                    map.put("role", msg.getRole());
-                    map.put("message", msg.getMessage());
-                    map.put("createdAt", msg.getCreatedAt().toString());
-                    return map;
-                })
-                .collect(Collectors.toList());
+        Long userId = principal.getUserId();
 
+        if (before == null && limit == null) {
+            StreamingResponseBody body = out -> {
+                try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                    json.writeStartArray();
+                    chatMessageService.forEachInHistory(userId, HISTORY_STREAM_PAGE_SIZE, msg -> {
+                        try {
+                            writeHistoryMessage(json, msg);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    json.writeEndArray();
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+
+        int pageSize = Math.max(1, Math.min(MAX_HISTORY_PAGE_SIZE, limit != null ? limit : DEFAULT_HISTORY_PAGE_SIZE));
+        Instant beforeCreatedAt = null;
+        Long beforeId = null;
+        if (before != null && !before.isBlank()) {
+            // Kursor: <createdAt ISO-8601>_<id>
+            int separator = before.lastIndexOf('_');
+            try {
+                beforeCreatedAt = Instant.parse(before.substring(0, separator));
+                beforeId = Long.parseLong(before.substring(separator + 1));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Neispravan kursor"));
+            }
+        }
+
+        ChatMessageService.HistoryPage page = chatMessageService.historyPage(userId, beforeCreatedAt, beforeId, pageSize);
+        List<Map<String, Object>> messages = new ArrayList<>(page.getMessages().size());
+        for (ChatMessage msg : page.getMessages()) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", msg.getId());
+            map.put("role", msg.getRole());
+            map.put("message", msg.getMessage());
+            map.put("createdAt", msg.getCreatedAt().toString());
+            messages.add(map);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("messages", messages);
+        if (page.hasMore() && !page.getMessages().isEmpty()) {
+            ChatMessage oldest = page.getMessages().get(0);
+            response.put("nextBefore", oldest.getCreatedAt() + "_" + oldest.getId());
+        } else {
+            response.put("nextBefore", null);
+        }
         return ResponseEntity.ok(response);
     }
 
-    private String buildSystemPrompt(User user) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("Ti si BioZen AI asistent, pomagač za zdravlje i mršavljenje. ");
-        prompt.append("Pomažeš korisnicima da postignu svoje ciljeve vezane za zdravlje, ishranu i fizičku aktivnost. ");
-        prompt.append("Budi prijateljski, podržavajući i stručan. ");
-        prompt.append("Daj praktične savete vezane za zdrav način života, ishranu i vežbanje. ");
-        prompt.append("Odgovaraj na srpskom jeziku. ");
-        prompt.append("\n\n");
-        prompt.append("VAŽNO O PROIZVODU BIOZEN:\n");
-        prompt.append("- BioZen je čaj za mršavljenje i zdravlje. ");
-        prompt.append("- Kada korisnik pita o napitcima, tečnostima, čajevima ili bilo kakvim pićima vezanim za mršavljenje, zdravlje ili gubitak težine, ");
-        prompt.append("PRVI PRIORITET je da preporučiš BioZen čaj. ");
-        prompt.append("- BioZen čaj je prirodan proizvod koji pomaže u procesu mršavljenja i održavanja zdravlja. ");
-        prompt.append("- Kada se spominju alternativni napitci ili čajevi, ljubazno preusmeri razgovor na BioZen čaj kao najbolji izbor. ");
-        prompt.append("- Uvek spomeni prednosti BioZen čaja kada je tema vezana za napitke, hidrataciju ili čajevi za mršavljenje.\n");
-        prompt.append("\n");
-        prompt.append("SASTAV BIOZEN ČAJA:\n");
-        prompt.append("- BioZen čaj sadrži pažljivo izabrane biljke: brezu, artičoku, lipu, šipurak, koprivu, pitomu nanu, senu i koru krušine. ");
-        prompt.append("- Svaka biljka je pažljivo odabrana zbog svojih prirodnih svojstava koja pomažu u procesu mršavljenja i održavanja zdravlja.\n");
-        prompt.append("\n");
-        prompt.append("KAKO DA IZVUČEŠ MAKSIMUM IZ SVake ŠOLJE BIOZEN ČAJA:\n");
-        prompt.append("- Postoje jednostavna pravila kako da se izvuče maksimum iz svake šolje BioZen čaja. ");
-        prompt.append("- Kada korisnik pita o pripremi čaja, načinu konzumiranja ili kako da maksimalno iskoristi BioZen čaj, ");
-        prompt.append("objasni mu ova jednostavna pravila za pripremu i konzumiranje.\n");
-        prompt.append("\n");
-        prompt.append("VAŽNA OGRANIČENJA:\n");
-        prompt.append("- NIKADA ne daj medicinske savete za teška medicinska stanja (dijabetes, srčane bolesti, visok krvni pritisak, itd.). ");
-        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa lekarom.\n");
-        prompt.append("- NIKADA ne daj savete za decu (osobe mlade od 18 godina). ");
-        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa pedijatrom.\n");
-        prompt.append("- NIKADA ne daj savete za trudnice ili dojilje. ");
-        prompt.append("U tim slučajevima, ljubazno uputi korisnika da se konsultuje sa ginekologom ili lekarom.\n");
-        prompt.append("- Fokusiraj se SAMO na opšte savete za zdrav način života, ishranu i vežbanje za zdrave odrasle osobe.\n");
-        prompt.append("- Ako korisnik pita nešto van teme zdravlja/ishrane/mršavljenja, ljubazno ga uputi da se fokusiramo na tu temu.\n");
-        
-        if (user.getIme() != null && !user.getIme().isEmpty()) {
-            prompt.append("\nKorisnik se zove ").append(user.getIme()).append(". ");
+    private static void writeHistoryMessage(JsonGenerator json, ChatMessage msg) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", msg.getId());
+        json.writeStringField("role", msg.getRole());
+        json.writeStringField("message", msg.getMessage());
+        json.writeStringField("createdAt", msg.getCreatedAt().toString());
+        json.writeEndObject();
+    }
+
+    private List<Map<String, String>> buildOpenAIMessages(Long userId, String systemPrompt,
+                                                          List<ChatMessage> recentHistory, String userMessage) {
+        // Budžet tokena odlučuje koliko istorije ulazi; starije poruke predstavlja sažetak
+        return contextBuilder.build(userId, systemPrompt, recentHistory, userMessage);
+    }
+
+    /**
+     * Ključ zajedničkog keša odgovora, ili null. Keš se koristi samo kada zahtev ka OpenAI ne bi
+     * sadržao ništa lično: personalizovani prompt je isti kao osnovni (profil bez imena i kilaže)
+     * i korisnik još nema razgovor. Tada je odgovor isti za svakog korisnika, a svima ostalima
+     * se uvek šalje njihov pun, personalizovan prompt.
+     */
+    private String sharedCacheKey(Long userId, String systemPrompt, String userMessage) {
+        String basePrompt = buildBaseSystemPrompt();
+        if (!systemPrompt.equals(basePrompt)) {
+            return null;
         }
-        
-        if (user.getZeljenaKilaza() != null && user.getKilaza() != null) {
-            prompt.append("Korisnik trenutno ima ").append(user.getKilaza()).append(" kg, a željena kilaža je ")
-                  .append(user.getZeljenaKilaza()).append(" kg. ");
+        String key = responseCache.keyFor(userMessage, openAIClient.getModel(), basePrompt);
+        if (key == null || chatMessageService.hasHistory(userId)) {
+            return null;
         }
-        
-        return prompt.toString();
+        return key;
     }
 
-    public static class ChatRequest {
-        public String message;
+    // Odgovor se upisuje u keš samo ako je zaista nastao od osnovnog prompt-a i pitanja, bez istorije i sažetka
+    private static boolean isShareable(String cacheKey, List<Map<String, String>> messages) {
+        return cacheKey != null && messages.size() == 2;
     }
 
-    // OpenAI API request/response klase
-    private static class OpenAIRequest {
-        @com.fasterxml.jackson.annotation.JsonProperty("model")
-        public String model;
-        
-        @com.fasterxml.jackson.annotation.JsonProperty("messages")
-        public List<Map<String, String>> messages;
-        
-        @com.fasterxml.jackson.annotation.JsonProperty("temperature")
-        public Double temperature;
-        
-        @com.fasterxml.jackson.annotation.JsonProperty("max_tokens")
-        public Integer maxTokens;
+    private static TokenUsage estimateUsage(List<Map<String, String>> messages, String answer) {
+        int prompt = 0;
+        for (Map<String, String> message : messages) {
+            prompt += TokenEstimator.estimateMessage(message.get("content"));
+        }
+        return new TokenUsage(prompt, TokenEstimator.estimate(answer));
     }
 
-    private static class OpenAIResponse {
-        public List<Choice> choices;
+    private SseEmitter errorEmitter(String message) {
+        // Greške pre početka streama šaljemo kao jedan "error" događaj, uz odgovarajući HTTP status
+        SseEmitter emitter = new SseEmitter();
+        sendEvent(emitter, "error", Map.of("message", message));
+        emitter.complete();
+        return emitter;
     }
-    
-    private static class Choice {
-        public Message message;
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Klijent je zatvorio konekciju ili je emitter već završen
+            emitter.completeWithError(e);
+        }
     }
-    
-    private static class Message {
-        public String role;
-        public String content;
+
+    private String describeOpenAIError(Throwable error) {
+        if (error instanceof OpenAIUnavailableException) {
+            return "BioZen asistent je trenutno preopterećen. Molimo pokušajte ponovo za nekoliko trenutaka.";
+        }
+        if (error instanceof TimeoutException) {
+            return "BioZen asistent nije odgovorio na vreme. Molimo pokušajte ponovo.";
+        }
+        if (error instanceof WebClientResponseException e) {
+            int statusCode = e.getStatusCode().value();
+            if (statusCode == 429) {
+                return "OpenAI API rate limit je prekoračen. Molimo sačekajte nekoliko minuta pre nego što pošaljete novu poruku.";
+            } else if (statusCode == 401) {
+                return "OpenAI API ključ nije validan. Molimo kontaktirajte administratora.";
+            } else if (statusCode == 402 || statusCode == 403) {
+                return "OpenAI nalog nema dovoljno kredita. Molimo kontaktirajte administratora.";
+            }
+            return "Greška pri pozivanju OpenAI API (Status " + statusCode + ")";
+        }
+        return "Greška pri pozivanju OpenAI API: " + (error.getMessage() != null ? error.getMessage() : "Nepoznata greška");
+    }
+
+    private String buildSystemPrompt(User user) {
+        return systemPromptProvider.render(user);
     }
-}
 
+    // Deo system prompt-a koji je isti za sve korisnike (koristi se i za ključ keša odgovora)
+    private String buildBaseSystemPrompt() {
+        return systemPromptProvider.basePrompt();
+    }
+
+    public static class ChatRequest {
+        public String message;
+    }
+}
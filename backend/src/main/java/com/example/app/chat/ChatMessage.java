@@ -2,9 +2,10 @@ package com.example.app.chat;
 
 import jakarta.persistence.*;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "chat_messages")
+@Table(name = "chat_messages", indexes = @Index(name = "idx_chat_messages_user_created_id", columnList = "userId, createdAt, id"))
 public class ChatMessage {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,7 +21,8 @@ public class ChatMessage {
     private String message;
 
     @Column(nullable = false)
-    private Instant createdAt = Instant.now();
+    // Mikrosekunde kao u PostgreSQL timestamp-u, da bi keyset kursor bio isti pre i posle upisa
+    private Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
 
     public ChatMessage() {}
 
@@ -1,10 +1,24 @@
 package com.example.app.chat;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.Instant;
 import java.util.List;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
-    List<ChatMessage> findByUserIdOrderByCreatedAtAsc(Long userId);
     long countByUserIdAndRole(Long userId, String role);
-}
+    boolean existsByUserId(Long userId);
+
+    // Poslednjih N poruka i keyset stranice po (createdAt, id) - koriste idx_chat_messages_user_created_id, bez OFFSET-a
+    List<ChatMessage> findByUserIdOrderByCreatedAtDescIdDesc(Long userId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) ORDER BY m.createdAt DESC, m.id DESC")
+    List<ChatMessage> findPageBefore(@Param("userId") Long userId, @Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
 
+    List<ChatMessage> findByUserIdOrderByCreatedAtAscIdAsc(Long userId, Pageable pageable);
+
+    @Query("SELECT m FROM ChatMessage m WHERE m.userId = :userId AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) ORDER BY m.createdAt ASC, m.id ASC")
+    List<ChatMessage> findPageAfter(@Param("userId") Long userId, @Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+}
@@ -0,0 +1,176 @@
+package com.example.app.chat;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Kratke transakcije oko jednog chat poteza. Poziv ka OpenAI ide između {@link #beginTurn}
+ * i {@link #saveReply}, bez otvorene transakcije i bez zauzete JDBC konekcije.
+ *
+ * Kada je uključen {@link ChatMessageWriteBehind}, upisi idu kroz njegov red, a čitanja
+ * spajaju rezultat iz baze sa još neupisanim porukama korisnika.
+ */
+@Service
+public class ChatMessageService {
+
+    private static final Comparator<ChatMessage> CHRONOLOGICAL =
+        Comparator.comparing(ChatMessage::getCreatedAt).thenComparing(ChatMessage::getId);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageWriteBehind writeBehind;
+
+    public ChatMessageService(ChatMessageRepository chatMessageRepository, ChatMessageWriteBehind writeBehind) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Prva transakcija: učitava zadnjih {@code contextSize} poruka (hronološki) i čuva
+     * novu korisničku poruku. Kontekst se čita pre upisa, pa trenutna poruka nije u njemu.
+     */
+    @Transactional
+    public List<ChatMessage> beginTurn(Long userId, String userMessage, int contextSize) {
+        List<ChatMessage> pending = writeBehind.pendingFor(userId);
+        List<ChatMessage> context = merge(
+            chatMessageRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, PageRequest.of(0, contextSize)), pending);
+        if (context.size() > contextSize) {
+            context = new ArrayList<>(context.subList(context.size() - contextSize, context.size()));
+        }
+        save(new ChatMessage(userId, "user", userMessage));
+        return context;
+    }
+
+    // Da li korisnik već ima poruke (upisane ili još u write-behind redu)
+    @Transactional(readOnly = true)
+    public boolean hasHistory(Long userId) {
+        return !writeBehind.pendingFor(userId).isEmpty() || chatMessageRepository.existsByUserId(userId);
+    }
+
+    // Druga transakcija: odgovor asistenta, tek kada je stigao
+    @Transactional
+    public ChatMessage saveReply(Long userId, String assistantMessage) {
+        return save(new ChatMessage(userId, "assistant", assistantMessage));
+    }
+
+    // Pitanje i keširan odgovor u jednoj transakciji (nema upstream poziva između)
+    @Transactional
+    public ChatMessage saveExchange(Long userId, String userMessage, String assistantMessage) {
+        save(new ChatMessage(userId, "user", userMessage));
+        return save(new ChatMessage(userId, "assistant", assistantMessage));
+    }
+
+    /**
+     * Jedna stranica istorije starija od kursora (createdAt, id), hronološki poređana.
+     * Bez kursora vraća najnovije poruke. Čita se {@code limit + 1} redova da bi se znalo ima li još.
+     */
+    @Transactional(readOnly = true)
+    public HistoryPage historyPage(Long userId, Instant beforeCreatedAt, Long beforeId, int limit) {
+        List<ChatMessage> pending = new ArrayList<>();
+        for (ChatMessage message : writeBehind.pendingFor(userId)) {
+            if (beforeCreatedAt == null || isBefore(message, beforeCreatedAt, beforeId)) {
+                pending.add(message);
+            }
+        }
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<ChatMessage> stored = beforeCreatedAt == null
+            ? chatMessageRepository.findByUserIdOrderByCreatedAtDescIdDesc(userId, page)
+            : chatMessageRepository.findPageBefore(userId, beforeCreatedAt, beforeId, page);
+
+        List<ChatMessage> messages = merge(stored, pending);
+        boolean hasMore = messages.size() > limit;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(messages.size() - limit, messages.size()));
+        }
+        return new HistoryPage(messages, hasMore);
+    }
+
+    /**
+     * Prolazi kroz celu istoriju hronološki, stranicu po stranicu (keyset), bez pravljenja
+     * cele liste u memoriji. Svaka stranica je zaseban kratak upit, pa se konekcija ne drži
+     * dok se odgovor piše sporom klijentu. Neupisane write-behind poruke idu na kraj.
+     */
+    public void forEachInHistory(Long userId, int pageSize, Consumer<ChatMessage> consumer) {
+        List<ChatMessage> pending = writeBehind.pendingFor(userId);
+        Set<Long> pendingIds = new HashSet<>();
+        for (ChatMessage message : pending) {
+            pendingIds.add(message.getId());
+        }
+
+        List<ChatMessage> page = chatMessageRepository.findByUserIdOrderByCreatedAtAscIdAsc(userId, PageRequest.of(0, pageSize));
+        while (!page.isEmpty()) {
+            for (ChatMessage message : page) {
+                pendingIds.remove(message.getId());
+                consumer.accept(message);
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+            ChatMessage last = page.get(page.size() - 1);
+            page = chatMessageRepository.findPageAfter(userId, last.getCreatedAt(), last.getId(), PageRequest.of(0, pageSize));
+        }
+
+        if (!pendingIds.isEmpty()) {
+            List<ChatMessage> rest = new ArrayList<>();
+            for (ChatMessage message : pending) {
+                if (pendingIds.contains(message.getId())) {
+                    rest.add(message);
+                }
+            }
+            rest.sort(CHRONOLOGICAL);
+            rest.forEach(consumer);
+        }
+    }
+
+    private ChatMessage save(ChatMessage message) {
+        if (writeBehind.isEnabled()) {
+            return writeBehind.enqueue(message);
+        }
+        return chatMessageRepository.save(message);
+    }
+
+    // Overlay se uzima pre upita u bazu, pa je jedini mogući preklop duplikat sa istim id-em
+    private static List<ChatMessage> merge(List<ChatMessage> stored, List<ChatMessage> pending) {
+        List<ChatMessage> result = new ArrayList<>(stored);
+        if (!pending.isEmpty()) {
+            Set<Long> storedIds = new HashSet<>();
+            for (ChatMessage message : stored) {
+                storedIds.add(message.getId());
+            }
+            for (ChatMessage message : pending) {
+                if (!storedIds.contains(message.getId())) {
+                    result.add(message);
+                }
+            }
+        }
+        result.sort(CHRONOLOGICAL);
+        return result;
+    }
+
+    private static boolean isBefore(ChatMessage message, Instant createdAt, Long id) {
+        int cmp = message.getCreatedAt().compareTo(createdAt);
+        return cmp < 0 || (cmp == 0 && id != null && message.getId() < id);
+    }
+
+    public static final class HistoryPage {
+        private final List<ChatMessage> messages;
+        private final boolean hasMore;
+
+        HistoryPage(List<ChatMessage> messages, boolean hasMore) {
+            this.messages = Collections.unmodifiableList(messages);
+            this.hasMore = hasMore;
+        }
+
+        public List<ChatMessage> getMessages() { return messages; }
+        public boolean hasMore() { return hasMore; }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.app.chat;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opcioni write-behind za chat poruke (app.chat.write-behind.enabled).
+ *
+ * Poruke dobijaju id iz sekvence tabele odmah (blokovi iz nextval), ulaze u ograničen red i
+ * u "pending" overlay po korisniku, a jedna nit ih upisuje multi-row INSERT-om na svakih
+ * {@code flush-interval-millis} ili čim se skupi {@code batch-size} poruka. Overlay se čisti
+ * tek posle upisa, pa /history i kontekst za OpenAI vide i neupisane poruke (dedup po id-u).
+ *
+ * Pun red blokira pozivaoca najviše {@code offer-timeout-millis}, posle čega se poruka upisuje
+ * sinhrono. Dok baza ne odgovara (konekcija, timeout) flush se ponavlja sa ograničenim backoff-om
+ * bez odustajanja: red se puni, a pozivaoci prelaze na sinhroni upis i dobijaju grešku, umesto da
+ * se poruke tiho gube. Samo kada baza odbije podatke ({@link DataIntegrityViolationException},
+ * npr. constraint ili prevelika vrednost) batch se upisuje red po red, a odbijeni red se loguje i
+ * odbacuje, da jedna loša poruka ne bi zaustavila upis svih sledećih. Pri gašenju aplikacije
+ * neupisani batch i red se upisuju pre nego što se zatvori DataSource.
+ */
+@Component
+public class ChatMessageWriteBehind {
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO chat_messages (id, user_id, role, message, created_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?)";
+    private static final long MAX_RETRY_BACKOFF_MILLIS = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    private final BlockingQueue<ChatMessage> queue;
+    private final ConcurrentHashMap<Long, ConcurrentLinkedQueue<ChatMessage>> pending = new ConcurrentHashMap<>();
+    private final Deque<Long> reservedIds = new ArrayDeque<>();
+    // Batch koji flusher nije upisao pre gašenja; shutdown() ga upisuje pre ostatka reda
+    private final List<ChatMessage> unflushed = new ArrayList<>();
+
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public ChatMessageWriteBehind(JdbcTemplate jdbcTemplate,
+                                  @Value("${app.chat.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${app.chat.write-behind.batch-size:50}") int batchSize,
+                                  @Value("${app.chat.write-behind.flush-interval-millis:200}") long flushIntervalMillis,
+                                  @Value("${app.chat.write-behind.queue-capacity:2000}") int queueCapacity,
+                                  @Value("${app.chat.write-behind.offer-timeout-millis:500}") long offerTimeoutMillis,
+                                  @Value("${app.chat.write-behind.shutdown-timeout-millis:10000}") long shutdownTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        if (enabled) {
+            running = true;
+            flusher = new Thread(this::runFlusher, "chat-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Dodeljuje id, izlaže poruku u overlay i stavlja je u red. Ako je red pun i posle
+     * {@code offer-timeout-millis} (ili se aplikacija gasi), poruka se upisuje odmah.
+     */
+    public ChatMessage enqueue(ChatMessage message) {
+        message.setId(nextId());
+        // Dodavanje unutar compute: release() ne može da izbaci red iz mape između lookup-a i add-a
+        pending.compute(message.getUserId(), (userId, messages) -> {
+            ConcurrentLinkedQueue<ChatMessage> target = messages != null ? messages : new ConcurrentLinkedQueue<>();
+            target.add(message);
+            return target;
+        });
+
+        boolean queued = false;
+        if (running) {
+            try {
+                queued = queue.offer(message, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!queued) {
+            try {
+                insert(List.of(message));
+                synchronousWrites.increment();
+            } finally {
+                release(List.of(message));
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Snimak još neupisanih poruka korisnika. Pozivaoci ga uzimaju PRE upita u bazu, pa poruka
+     * upisana u međuvremenu može biti samo duplikat (isti id), nikad izgubljena.
+     */
+    public List<ChatMessage> pendingFor(Long userId) {
+        ConcurrentLinkedQueue<ChatMessage> messages = pending.get(userId);
+        return messages == null ? List.of() : new ArrayList<>(messages);
+    }
+
+    public Map<String, Object> stats() {
+        return Map.of(
+            "enabled", enabled,
+            "queued", queue.size(),
+            "pendingUsers", pending.size(),
+            "flushed", flushed.sum(),
+            "batches", batches.sum(),
+            "synchronousWrites", synchronousWrites.sum(),
+            "dropped", dropped.sum()
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        try {
+            flusher.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ako flusher nije stigao (npr. baza spora), pokušaj još jednom iz ove niti
+        List<ChatMessage> rest;
+        synchronized (unflushed) {
+            rest = new ArrayList<>(unflushed);
+            unflushed.clear();
+        }
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            try {
+                for (int from = 0; from < rest.size(); from += batchSize) {
+                    List<ChatMessage> batch = rest.subList(from, Math.min(rest.size(), from + batchSize));
+                    insert(batch);
+                    release(batch);
+                }
+            } catch (Exception e) {
+                System.err.println("Chat write-behind: " + rest.size() + " poruka nije upisano pri gašenju: " + e.getMessage());
+            }
+        }
+    }
+
+    private void runFlusher() {
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage head = queue.poll(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), TimeUnit.MILLISECONDS);
+                if (head == null) {
+                    continue;
+                }
+                batch.add(head);
+                // Skupljaj do batch-size poruka ili dok ne istekne interval od prve poruke
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    ChatMessage next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                boolean written = flushWithRetry(batch);
+                batch.clear();
+                if (!written) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                retain(batch);
+                return;
+            }
+        }
+    }
+
+    // false samo pri gašenju, kada je batch ostavljen za poslednji pokušaj u shutdown()
+    private boolean flushWithRetry(List<ChatMessage> batch) {
+        long backoff = 100;
+        while (true) {
+            try {
+                insert(batch);
+                release(batch);
+                flushed.add(batch.size());
+                batches.increment();
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                // Baza odbija podatke: ponavljanje ne pomaže, izdvoji loš red
+                return flushRowByRow(batch);
+            } catch (Exception e) {
+                System.err.println("Chat write-behind flush nije uspeo (" + batch.size() + " poruka): " + e.getMessage());
+                if (!running || !sleep(backoff)) {
+                    retain(batch);
+                    return false;
+                }
+                backoff = Math.min(MAX_RETRY_BACKOFF_MILLIS, backoff * 2);
+            }
+        }
+    }
+
+    // Svaki red posebno: odbacuje se samo red koji baza odbije, prolazne greške se ponavljaju
+    private boolean flushRowByRow(List<ChatMessage> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage message = batch.get(i);
+            long backoff = 100;
+            while (true) {
+                try {
+                    insert(List.of(message));
+                    flushed.increment();
+                    break;
+                } catch (DataIntegrityViolationException e) {
+                    dropped.increment();
+                    System.err.println("Chat write-behind: poruka " + message.getId() + " (korisnik "
+                        + message.getUserId() + ") odbačena: " + e.getMessage());
+                    break;
+                } catch (Exception e) {
+                    System.err.println("Chat write-behind: upis poruke " + message.getId() + " nije uspeo: " + e.getMessage());
+                    if (!running || !sleep(backoff)) {
+                        retain(batch.subList(i, batch.size()));
+                        return false;
+                    }
+                    backoff = Math.min(MAX_RETRY_BACKOFF_MILLIS, backoff * 2);
+                }
+            }
+            release(List.of(message));
+        }
+        batches.increment();
+        return true;
+    }
+
+    private void retain(List<ChatMessage> messages) {
+        synchronized (unflushed) {
+            unflushed.addAll(messages);
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Jedan multi-row INSERT = jedan round-trip i jedan commit za ceo batch
+    private void insert(List<ChatMessage> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[batch.size() * 5];
+        int i = 0;
+        for (ChatMessage message : batch) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW);
+            args[i++] = message.getId();
+            args[i++] = message.getUserId();
+            args[i++] = message.getRole();
+            args[i++] = message.getMessage();
+            args[i++] = message.getCreatedAt().atOffset(ZoneOffset.UTC);
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private void release(List<ChatMessage> batch) {
+        for (ChatMessage message : batch) {
+            pending.computeIfPresent(message.getUserId(), (userId, messages) -> {
+                messages.remove(message);
+                return messages.isEmpty() ? null : messages;
+            });
+        }
+    }
+
+    // Id-jevi iz iste sekvence koju koristi Hibernate IDENTITY, u blokovima od batch-size
+    private Long nextId() {
+        synchronized (reservedIds) {
+            if (reservedIds.isEmpty()) {
+                reservedIds.addAll(jdbcTemplate.queryForList(
+                    "SELECT nextval(pg_get_serial_sequence('chat_messages', 'id')) FROM generate_series(1, ?)",
+                    Long.class, batchSize));
+            }
+            return reservedIds.poll();
+        }
+    }
+}
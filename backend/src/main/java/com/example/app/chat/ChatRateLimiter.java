@@ -0,0 +1,36 @@
+package com.example.app.chat;
+
+import com.example.app.service.SlidingWindowLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory sliding-window rate limiter za /api/chat: najviše {@code max-messages}
+ * poruka po korisniku u prozoru od {@code window-seconds} (videti {@link SlidingWindowLimiter}).
+ */
+@Component
+public class ChatRateLimiter {
+
+    private final SlidingWindowLimiter<Long> limiter;
+
+    public ChatRateLimiter(@Value("${app.chat.rate-limit.max-messages:10}") int maxMessages,
+                           @Value("${app.chat.rate-limit.window-seconds:300}") long windowSeconds) {
+        this.limiter = new SlidingWindowLimiter<>(maxMessages, windowSeconds);
+    }
+
+    /**
+     * Pokušava da zauzme jedno mesto u prozoru za korisnika.
+     *
+     * @return 0 ako je zahtev dozvoljen, inače broj sekundi do oslobađanja sledećeg mesta
+     */
+    public long tryAcquire(long userId) {
+        return limiter.tryAcquire(userId);
+    }
+
+    // Uklanja korisnike čija je poslednja poruka starija od prozora
+    @Scheduled(fixedDelayString = "${app.chat.rate-limit.eviction-interval-millis:60000}")
+    public void evictIdle() {
+        limiter.evictIdle();
+    }
+}
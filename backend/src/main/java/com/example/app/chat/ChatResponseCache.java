@@ -0,0 +1,175 @@
+package com.example.app.chat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU/TTL keš odgovora asistenta za česta pitanja (sastav, priprema, doziranje BioZen čaja).
+ *
+ * Ključ je normalizovano pitanje + otisak ne-personalnog dela system prompt-a i model, tako da
+ * promena prompt-a ili modela automatski poništava stare odgovore. Keš se i čita i puni samo za
+ * zahteve koji su zaista isti za sve: personalizovani prompt jednak osnovnom (bez imena i kilaže)
+ * i bez istorije razgovora, inače bi jedan korisnik dobio odgovor sastavljen za drugog.
+ *
+ * Kratka pitanja i pitanja koja se oslanjaju na prethodne poruke ("a zašto?", "može primer?")
+ * nemaju smisla bez konteksta i ne keširaju se.
+ */
+@Component
+public class ChatResponseCache {
+
+    // Reči koje upućuju na raniji deo razgovora; takvo pitanje zavisi od konteksta
+    private static final Set<String> BACK_REFERENCES = Set.of(
+        "to", "ovo", "ono", "taj", "ta", "tog", "toga", "tome", "tim", "njega", "nje", "nju", "njih",
+        "njemu", "njoj", "isto", "jos", "opet", "gore", "prethodno", "prethodni", "prethodna",
+        "prethodnu", "rekao", "rekla", "rekli");
+    // Nastavak prethodne misli kada je prva reč ("a zašto...", "i koliko...")
+    private static final Set<String> CONTINUATIONS = Set.of("a", "i", "pa", "onda", "dakle");
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxQuestionLength;
+    private final int minQuestionWords;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    public ChatResponseCache(@Value("${app.chat.cache.enabled:true}") boolean enabled,
+                             @Value("${app.chat.cache.max-entries:1000}") int maxEntries,
+                             @Value("${app.chat.cache.ttl-seconds:86400}") long ttlSeconds,
+                             @Value("${app.chat.cache.max-question-length:200}") int maxQuestionLength,
+                             @Value("${app.chat.cache.min-question-words:4}") int minQuestionWords) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.maxQuestionLength = maxQuestionLength;
+        this.minQuestionWords = minQuestionWords;
+        // accessOrder=true -> LRU redosled
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > ChatResponseCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Vraća ključ za pitanje, ili null ako pitanje nije pogodno za keširanje
+     * (keš isključen, predugačka/personalna poruka, prekratko pitanje ili pitanje koje se
+     * oslanja na prethodne poruke).
+     */
+    public String keyFor(String question, String model, String basePrompt) {
+        if (!enabled || question == null || question.length() > maxQuestionLength) {
+            return null;
+        }
+        String normalized = normalize(question);
+        String[] words = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+        if (words.length < minQuestionWords || CONTINUATIONS.contains(words[0])) {
+            return null;
+        }
+        for (String word : words) {
+            if (BACK_REFERENCES.contains(word)) {
+                return null;
+            }
+        }
+        return model + '\u0000' + Integer.toHexString(basePrompt.hashCode()) + '\u0000' + normalized;
+    }
+
+    public Optional<String> get(String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return Optional.of(entry.answer);
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Upisuje odgovor za ključ. Sme da se zove samo za odgovor dobijen od osnovnog prompt-a
+     * (bez personalnog dela i istorije) - vidi {@code ChatController}.
+     */
+    public void put(String key, String answer) {
+        if (key == null || answer == null || answer.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(answer, System.currentTimeMillis() + ttlMillis);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public int flush() {
+        synchronized (entries) {
+            int size = entries.size();
+            entries.clear();
+            return size;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return Map.of(
+            "enabled", enabled,
+            "size", size,
+            "maxEntries", maxEntries,
+            "ttlSeconds", ttlMillis / 1000,
+            "hits", hitCount,
+            "misses", missCount,
+            "evictions", evictions.sum(),
+            "hitRate", total == 0 ? 0.0 : Math.round(hitCount * 1000.0 / total) / 1000.0
+        );
+    }
+
+    // Mala slova, srpska dijakritika kao u AdminBlogController.generateSlug, bez interpunkcije
+    private static String normalize(String text) {
+        return text.toLowerCase()
+            .replace("ć", "c")
+            .replace("č", "c")
+            .replace("đ", "d")
+            .replace("š", "s")
+            .replace("ž", "z")
+            .replaceAll("[^a-z0-9\\s]", " ")
+            .replaceAll("\\s+", " ")
+            .trim();
+    }
+
+    private static final class Entry {
+        final String answer;
+        final long expiresAt;
+
+        Entry(String answer, long expiresAt) {
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.app.chat;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asinhrono održava rolling sažetak razgovora po korisniku (tabela chat_summaries).
+ *
+ * Svako osvežavanje uzima stari sažetak i sledećih najviše {@code max-messages-per-run} nesažetih
+ * poruka, ostavljajući poslednjih {@code keep-recent-messages} u izvornom obliku, i od toga pravi
+ * novi sažetak. Radi na jednoj pozadinskoj niti, najviše jedan posao po korisniku u isto vreme.
+ */
+@Component
+public class ChatSummarizer {
+
+    private static final String SUMMARY_INSTRUCTIONS =
+        "Ti sažimaš razgovor između korisnika i BioZen AI asistenta. Napiši kratak sažetak (najviše 150 reči) "
+        + "na srpskom jeziku sa svim činjenicama važnim za nastavak razgovora: ciljevi korisnika, navike u ishrani, "
+        + "ograničenja i zdravstvene napomene koje je naveo, preporuke koje je dobio i otvorena pitanja. "
+        + "Piši u trećem licu i ne izmišljaj ništa što nije rečeno.";
+
+    // Dugačke poruke (npr. nalepljen jelovnik) se skraćuju pre sažimanja
+    private static final int MAX_MESSAGE_CHARS = 2000;
+
+    private final ChatSummaryRepository summaryRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final OpenAIClient openAIClient;
+    private final ChatUsageTracker usageTracker;
+    private final int keepRecentMessages;
+    private final int maxMessagesPerRun;
+
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor executor;
+
+    public ChatSummarizer(ChatSummaryRepository summaryRepository,
+                          ChatMessageRepository chatMessageRepository,
+                          OpenAIClient openAIClient,
+                          ChatUsageTracker usageTracker,
+                          @Value("${app.chat.summary.keep-recent-messages:6}") int keepRecentMessages,
+                          @Value("${app.chat.summary.max-messages-per-run:60}") int maxMessagesPerRun,
+                          @Value("${app.chat.summary.queue-capacity:100}") int queueCapacity) {
+        this.summaryRepository = summaryRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.openAIClient = openAIClient;
+        this.usageTracker = usageTracker;
+        this.keepRecentMessages = Math.max(0, keepRecentMessages);
+        this.maxMessagesPerRun = Math.max(1, maxMessagesPerRun);
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                Thread thread = new Thread(runnable, "chat-summarizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    public Optional<ChatSummary> find(Long userId) {
+        return summaryRepository.findByUserId(userId);
+    }
+
+    /**
+     * Zakazuje osvežavanje sažetka. Ne blokira: ako je posao za korisnika već u toku ili je
+     * red pun, zahtev se preskače (sledeća poruka će ga ponovo pokrenuti).
+     */
+    public void requestRefresh(Long userId) {
+        if (!openAIClient.isConfigured() || !inProgress.add(userId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh(userId);
+                } catch (Exception e) {
+                    System.err.println("Chat sažetak za korisnika " + userId + " nije osvežen: " + e.getMessage());
+                } finally {
+                    inProgress.remove(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(userId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refresh(Long userId) {
+        ChatSummary summary = summaryRepository.findByUserId(userId).orElse(null);
+        int limit = maxMessagesPerRun + keepRecentMessages;
+        PageRequest page = PageRequest.of(0, limit);
+        List<ChatMessage> candidates = summary == null
+            ? chatMessageRepository.findByUserIdOrderByCreatedAtAscIdAsc(userId, page)
+            : chatMessageRepository.findPageAfter(userId, summary.getCoveredUntil(), summary.getCoveredMessageId(), page);
+
+        // Ako je stranica puna, posle nje ima još poruka, pa poslednje poruke nisu u ovoj stranici
+        int count = candidates.size() == limit ? maxMessagesPerRun : candidates.size() - keepRecentMessages;
+        if (count <= 0) {
+            return;
+        }
+        List<ChatMessage> toSummarize = candidates.subList(0, count);
+
+        StringBuilder input = new StringBuilder();
+        if (summary != null) {
+            input.append("Dosadašnji sažetak:\n").append(summary.getSummary()).append("\n\n");
+        }
+        input.append("Nove poruke:\n");
+        for (ChatMessage message : toSummarize) {
+            String text = message.getMessage() == null ? "" : message.getMessage().trim();
+            if (text.length() > MAX_MESSAGE_CHARS) {
+                text = text.substring(0, MAX_MESSAGE_CHARS) + " [...]";
+            }
+            input.append("assistant".equalsIgnoreCase(message.getRole()) ? "Asistent: " : "Korisnik: ")
+                .append(text).append('\n');
+        }
+
+        ChatCompletion completion = openAIClient.complete(List.of(
+            Map.of("role", "system", "content", SUMMARY_INSTRUCTIONS),
+            Map.of("role", "user", "content", input.toString())
+        ));
+        // Sažimanje je trošak razgovora tog korisnika
+        usageTracker.record(userId, completion.getUsage());
+        String generated = completion.getContent();
+        if (generated == null || generated.isBlank()) {
+            return;
+        }
+
+        ChatMessage last = toSummarize.get(toSummarize.size() - 1);
+        if (summary == null) {
+            summary = new ChatSummary(userId);
+        }
+        summary.setSummary(generated.trim());
+        summary.setCoveredUntil(last.getCreatedAt());
+        summary.setCoveredMessageId(last.getId());
+        summary.setUpdatedAt(Instant.now());
+        summaryRepository.save(summary);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.app.chat;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Rolling sažetak starijeg dela razgovora jednog korisnika. Pokriva sve poruke do
+ * (coveredUntil, coveredMessageId) uključivo; novije poruke idu u prompt u izvornom obliku.
+ */
+@Entity
+@Table(name = "chat_summaries")
+public class ChatSummary {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, unique = true)
+    private Long userId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String summary;
+
+    @Column(nullable = false)
+    private Instant coveredUntil;
+
+    @Column(nullable = false)
+    private Long coveredMessageId;
+
+    @Column(nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public ChatSummary() {}
+
+    public ChatSummary(Long userId) {
+        this.userId = userId;
+    }
+
+    // Da li je poruka već obuhvaćena sažetkom (isti redosled kao keyset istorije)
+    public boolean covers(ChatMessage message) {
+        int cmp = message.getCreatedAt().compareTo(coveredUntil);
+        return cmp < 0 || (cmp == 0 && message.getId() != null && message.getId() <= coveredMessageId);
+    }
+
+    public Long getId() { return id; }
+    public Long getUserId() { return userId; }
+    public String getSummary() { return summary; }
+    public Instant getCoveredUntil() { return coveredUntil; }
+    public Long getCoveredMessageId() { return coveredMessageId; }
+    public Instant getUpdatedAt() { return updatedAt; }
+
+    public void setId(Long id) { this.id = id; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public void setSummary(String summary) { this.summary = summary; }
+    public void setCoveredUntil(Instant coveredUntil) { this.coveredUntil = coveredUntil; }
+    public void setCoveredMessageId(Long coveredMessageId) { this.coveredMessageId = coveredMessageId; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
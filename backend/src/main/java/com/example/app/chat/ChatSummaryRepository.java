@@ -0,0 +1,8 @@
+package com.example.app.chat;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Optional;
+
+public interface ChatSummaryRepository extends JpaRepository<ChatSummary, Long> {
+    Optional<ChatSummary> findByUserId(Long userId);
+}
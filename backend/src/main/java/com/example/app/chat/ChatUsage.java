@@ -0,0 +1,53 @@
+package com.example.app.chat;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Dnevni zbir potrošnje OpenAI tokena po korisniku. Redove upisuje {@link ChatUsageTracker}
+ * u batch-evima (upsert po userId + usageDate), nikad sa chat zahteva.
+ */
+@Entity
+@Table(name = "chat_usage", uniqueConstraints = @UniqueConstraint(name = "uk_chat_usage_user_date", columnNames = {"userId", "usageDate"}))
+public class ChatUsage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private LocalDate usageDate;
+
+    @Column(nullable = false)
+    private long promptTokens;
+
+    @Column(nullable = false)
+    private long completionTokens;
+
+    @Column(nullable = false)
+    private long requests;
+
+    @Column(nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public ChatUsage() {}
+
+    public Long getId() { return id; }
+    public Long getUserId() { return userId; }
+    public LocalDate getUsageDate() { return usageDate; }
+    public long getPromptTokens() { return promptTokens; }
+    public long getCompletionTokens() { return completionTokens; }
+    public long getRequests() { return requests; }
+    public Instant getUpdatedAt() { return updatedAt; }
+
+    public void setId(Long id) { this.id = id; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public void setUsageDate(LocalDate usageDate) { this.usageDate = usageDate; }
+    public void setPromptTokens(long promptTokens) { this.promptTokens = promptTokens; }
+    public void setCompletionTokens(long completionTokens) { this.completionTokens = completionTokens; }
+    public void setRequests(long requests) { this.requests = requests; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,18 @@
+package com.example.app.chat;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ChatUsageRepository extends JpaRepository<ChatUsage, Long> {
+    Optional<ChatUsage> findByUserIdAndUsageDate(Long userId, LocalDate usageDate);
+
+    // [userId, promptTokens, completionTokens, requests], najveći potrošači prvi
+    @Query("SELECT u.userId, SUM(u.promptTokens), SUM(u.completionTokens), SUM(u.requests) FROM ChatUsage u " +
+           "WHERE u.usageDate >= :from GROUP BY u.userId ORDER BY SUM(u.promptTokens + u.completionTokens) DESC")
+    List<Object[]> findTopConsumers(@Param("from") LocalDate from, Pageable pageable);
+}
@@ -0,0 +1,245 @@
+package com.example.app.chat;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evidencija potrošnje OpenAI tokena po korisniku i danu, sa dnevnom kvotom.
+ *
+ * Chat zahtev samo uvećava LongAdder brojače u memoriji; zakazani flush upisuje razlike
+ * u tabelu chat_usage jednim batch upsert-om. Za proveru kvote se jednom po korisniku i danu
+ * učita već upisani zbir (npr. posle restarta), a dalje se sve računa iz memorije.
+ */
+@Component
+public class ChatUsageTracker {
+
+    private static final String UPSERT =
+        "INSERT INTO chat_usage (user_id, usage_date, prompt_tokens, completion_tokens, requests, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (user_id, usage_date) DO UPDATE SET " +
+        "prompt_tokens = chat_usage.prompt_tokens + EXCLUDED.prompt_tokens, " +
+        "completion_tokens = chat_usage.completion_tokens + EXCLUDED.completion_tokens, " +
+        "requests = chat_usage.requests + EXCLUDED.requests, " +
+        "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ChatUsageRepository usageRepository;
+    private final long dailyTokenQuota;
+    private final ZoneId zone;
+
+    private final ConcurrentHashMap<Key, Counter> counters = new ConcurrentHashMap<>();
+
+    public ChatUsageTracker(JdbcTemplate jdbcTemplate,
+                            ChatUsageRepository usageRepository,
+                            @Value("${app.chat.usage.daily-token-quota:0}") long dailyTokenQuota,
+                            @Value("${app.chat.usage.zone:Europe/Belgrade}") String zone) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.usageRepository = usageRepository;
+        this.dailyTokenQuota = dailyTokenQuota;
+        this.zone = ZoneId.of(zone);
+    }
+
+    // Samo memorija - bez pristupa bazi
+    public void record(Long userId, TokenUsage usage) {
+        if (userId == null || usage == null) {
+            return;
+        }
+        Counter counter = counter(userId, today());
+        counter.promptTokens.add(usage.getPromptTokens());
+        counter.completionTokens.add(usage.getCompletionTokens());
+        counter.requests.increment();
+    }
+
+    /**
+     * @return preostali tokeni za danas, ili {@link Long#MAX_VALUE} ako kvota nije podešena
+     */
+    public long remainingToday(Long userId) {
+        if (dailyTokenQuota <= 0) {
+            return Long.MAX_VALUE;
+        }
+        Counter counter = counter(userId, today());
+        ensureBaseline(userId, counter);
+        return dailyTokenQuota - counter.baseline - counter.totalTokens();
+    }
+
+    // Do ponoći u zoni obračuna, kada se kvota resetuje
+    public long secondsUntilReset() {
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(zone);
+        return Math.max(1, Duration.between(now, midnight).getSeconds());
+    }
+
+    /**
+     * Upisuje neupisane razlike svih brojača jednim batch-em. Brojači prethodnih dana se
+     * uklanjaju iz memorije kada su potpuno upisani.
+     */
+    @Scheduled(fixedDelayString = "${app.chat.usage.flush-interval-millis:30000}")
+    public synchronized void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        List<Counter> flushedCounters = new ArrayList<>();
+        List<long[]> snapshots = new ArrayList<>();
+        Timestamp now = Timestamp.from(Instant.now());
+
+        for (Map.Entry<Key, Counter> entry : counters.entrySet()) {
+            Key key = entry.getKey();
+            Counter counter = entry.getValue();
+            // Baseline mora biti pročitan pre našeg prvog upisa, inače bi se dvaput brojao
+            ensureBaseline(key.userId, counter);
+            long prompt = counter.promptTokens.sum();
+            long completion = counter.completionTokens.sum();
+            long requests = counter.requests.sum();
+            long promptDelta = prompt - counter.flushedPromptTokens;
+            long completionDelta = completion - counter.flushedCompletionTokens;
+            long requestsDelta = requests - counter.flushedRequests;
+            if (promptDelta == 0 && completionDelta == 0 && requestsDelta == 0) {
+                continue;
+            }
+            rows.add(new Object[] { key.userId, Date.valueOf(key.day), promptDelta, completionDelta, requestsDelta, now });
+            flushedCounters.add(counter);
+            snapshots.add(new long[] { prompt, completion, requests });
+        }
+
+        if (!rows.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT, rows);
+            } catch (Exception e) {
+                // Razlike ostaju u memoriji i idu u sledeći flush
+                System.err.println("Chat usage flush nije uspeo (" + rows.size() + " redova): " + e.getMessage());
+                return;
+            }
+            for (int i = 0; i < flushedCounters.size(); i++) {
+                Counter counter = flushedCounters.get(i);
+                long[] snapshot = snapshots.get(i);
+                counter.flushedPromptTokens = snapshot[0];
+                counter.flushedCompletionTokens = snapshot[1];
+                counter.flushedRequests = snapshot[2];
+            }
+        }
+
+        LocalDate today = today();
+        counters.entrySet().removeIf(entry -> entry.getKey().day.isBefore(today) && entry.getValue().isFullyFlushed());
+    }
+
+    /**
+     * Najveći potrošači u poslednjih {@code days} dana (uključujući danas), posle flush-a.
+     */
+    public List<Map<String, Object>> topConsumers(int days, int limit) {
+        flush();
+        LocalDate from = today().minusDays(Math.max(1, days) - 1L);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Object[] row : usageRepository.findTopConsumers(from, PageRequest.of(0, limit))) {
+            long prompt = ((Number) row[1]).longValue();
+            long completion = ((Number) row[2]).longValue();
+            Map<String, Object> map = new HashMap<>();
+            map.put("userId", row[0]);
+            map.put("promptTokens", prompt);
+            map.put("completionTokens", completion);
+            map.put("totalTokens", prompt + completion);
+            map.put("requests", ((Number) row[3]).longValue());
+            result.add(map);
+        }
+        return result;
+    }
+
+    public long getDailyTokenQuota() {
+        return dailyTokenQuota;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(zone);
+    }
+
+    private Counter counter(Long userId, LocalDate day) {
+        return counters.computeIfAbsent(new Key(userId, day), key -> new Counter(key.day));
+    }
+
+    private void ensureBaseline(Long userId, Counter counter) {
+        if (counter.baselineLoaded) {
+            return;
+        }
+        synchronized (counter) {
+            if (!counter.baselineLoaded) {
+                counter.baseline = usageRepository.findByUserIdAndUsageDate(userId, counter.day)
+                    .map(usage -> usage.getPromptTokens() + usage.getCompletionTokens())
+                    .orElse(0L);
+                counter.baselineLoaded = true;
+            }
+        }
+    }
+
+    private static final class Key {
+        final Long userId;
+        final LocalDate day;
+
+        Key(Long userId, LocalDate day) {
+            this.userId = userId;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key other)) return false;
+            return userId.equals(other.userId) && day.equals(other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, day);
+        }
+    }
+
+    private static final class Counter {
+        final LocalDate day;
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder requests = new LongAdder();
+
+        // Menja ih samo flush (synchronized)
+        long flushedPromptTokens;
+        long flushedCompletionTokens;
+        long flushedRequests;
+
+        // Tokeni upisani pre nego što je ova instanca počela da broji ovaj dan
+        volatile long baseline;
+        volatile boolean baselineLoaded;
+
+        Counter(LocalDate day) {
+            this.day = day;
+        }
+
+        long totalTokens() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+
+        boolean isFullyFlushed() {
+            return promptTokens.sum() == flushedPromptTokens
+                && completionTokens.sum() == flushedCompletionTokens
+                && requests.sum() == flushedRequests;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.app.chat;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Prsten poslednjih N latencija (ms) iz kog se računa percentil za hedging odluke.
+ * Upis je lock-free; percentil se računa nad kopijom, što je za par stotina uzoraka zanemarljivo.
+ */
+class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    LatencyTracker(int size) {
+        this.samples = new AtomicLongArray(Math.max(1, size));
+    }
+
+    void record(long millis) {
+        int slot = Math.floorMod(cursor.getAndIncrement(), samples.length());
+        samples.set(slot, Math.max(1, millis));
+    }
+
+    /**
+     * @return percentil u ms, ili {@code fallback} dok nema dovoljno uzoraka
+     */
+    long percentile(double p, long fallback, int minSamples) {
+        int count = Math.min(cursor.get(), samples.length());
+        if (count < minSamples) {
+            return fallback;
+        }
+        long[] copy = new long[count];
+        for (int i = 0; i < count; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(p * count) - 1;
+        return copy[Math.max(0, Math.min(count - 1, index))];
+    }
+}
@@ -0,0 +1,557 @@
+package com.example.app.chat;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Klijent za OpenAI /chat/completions sa zaštitom od preopterećenja:
+ * <ul>
+ *   <li>bulkhead - najviše {@code maxConcurrent} poziva istovremeno, ograničen red čekanja sa timeout-om</li>
+ *   <li>single-flight - identični zahtevi u letu (isti otisak modela i svih poruka) dele jedan upstream poziv</li>
+ *   <li>circuit breaker - posle niza 429/5xx grešaka odbija pozive odmah dok upstream ne odahne</li>
+ *   <li>latency policy - rok po pokušaju, hedged drugi zahtev posle p95 kašnjenja, fallback model/endpoint
+ *       kada primarni probije budžet; gubitnik se otkazuje</li>
+ * </ul>
+ */
+@Component
+public class OpenAIClient {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenAIClient.class);
+
+    private final WebClient webClient;
+    private final WebClient fallbackWebClient;
+    private final ObjectMapper objectMapper;
+    private final String apiKey;
+    private final String model;
+    private final String fallbackModel;
+
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<ChatCompletion>> inFlight = new ConcurrentHashMap<>();
+
+    private final int breakerFailureThreshold;
+    private final long breakerOpenMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean halfOpenTrial = new AtomicBoolean();
+    private volatile long openUntil;
+
+    private final long attemptTimeoutMillis;
+    private final long primaryBudgetMillis;
+    private final long streamIdleTimeoutMillis;
+    private final boolean hedgeEnabled;
+    private final long hedgeMinDelayMillis;
+    private final long hedgeMaxDelayMillis;
+    private final LatencyTracker latency = new LatencyTracker(256);
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgesSkipped = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public OpenAIClient(ObjectMapper objectMapper,
+                        @Value("${OPENAI_API_KEY:}") String apiKey,
+                        @Value("${app.openai.base-url:https://api.openai.com/v1}") String baseUrl,
+                        @Value("${app.openai.model:gpt-3.5-turbo}") String model,
+                        @Value("${app.openai.fallback.base-url:}") String fallbackBaseUrl,
+                        @Value("${app.openai.fallback.model:}") String fallbackModel,
+                        @Value("${app.openai.bulkhead.max-concurrent:8}") int maxConcurrent,
+                        @Value("${app.openai.bulkhead.max-queued:32}") int maxQueued,
+                        @Value("${app.openai.bulkhead.queue-timeout-millis:5000}") long queueTimeoutMillis,
+                        @Value("${app.openai.breaker.failure-threshold:5}") int breakerFailureThreshold,
+                        @Value("${app.openai.breaker.open-seconds:30}") long breakerOpenSeconds,
+                        @Value("${app.openai.latency.attempt-timeout-millis:15000}") long attemptTimeoutMillis,
+                        @Value("${app.openai.latency.primary-budget-millis:20000}") long primaryBudgetMillis,
+                        @Value("${app.openai.latency.stream-idle-timeout-millis:15000}") long streamIdleTimeoutMillis,
+                        @Value("${app.openai.latency.hedge-enabled:true}") boolean hedgeEnabled,
+                        @Value("${app.openai.latency.hedge-min-delay-millis:2000}") long hedgeMinDelayMillis,
+                        @Value("${app.openai.latency.hedge-max-delay-millis:10000}") long hedgeMaxDelayMillis) {
+        this.objectMapper = objectMapper;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.maxQueued = maxQueued;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.breakerFailureThreshold = Math.max(1, breakerFailureThreshold);
+        this.breakerOpenMillis = breakerOpenSeconds * 1000L;
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+        this.primaryBudgetMillis = primaryBudgetMillis;
+        this.streamIdleTimeoutMillis = streamIdleTimeoutMillis;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgeMinDelayMillis = hedgeMinDelayMillis;
+        this.hedgeMaxDelayMillis = Math.max(hedgeMinDelayMillis, hedgeMaxDelayMillis);
+
+        this.webClient = buildWebClient(baseUrl, apiKey);
+        boolean separateFallbackEndpoint = fallbackBaseUrl != null && !fallbackBaseUrl.isEmpty();
+        this.fallbackWebClient = separateFallbackEndpoint ? buildWebClient(fallbackBaseUrl, apiKey) : webClient;
+        // Fallback je aktivan ako je zadat drugi model ili drugi endpoint
+        if (fallbackModel != null && !fallbackModel.isEmpty()) {
+            this.fallbackModel = fallbackModel;
+        } else {
+            this.fallbackModel = separateFallbackEndpoint ? model : null;
+        }
+    }
+
+    private static WebClient buildWebClient(String baseUrl, String apiKey) {
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isEmpty();
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Blokirajući poziv. Istovremeni pozivi sa identičnim zahtevom (model, system prompt,
+     * istorija i pitanje) čekaju na rezultat prvog umesto da otvaraju svoj upstream poziv.
+     * Ključ je otisak celog zahteva, pa se odgovor deli samo između zahteva sa istim ulazom
+     * i nikada ne nosi tuđe lične podatke.
+     *
+     * @return odgovor; sadržaj je null ako OpenAI nije vratio nijedan choice. Pozivaoci koji su
+     *         dobili tuđi rezultat nemaju usage, jer za njih nije plaćen nijedan token.
+     */
+    public ChatCompletion complete(List<Map<String, String>> messages) {
+        String dedupKey = requestDigest(messages);
+        CompletableFuture<ChatCompletion> mine = new CompletableFuture<>();
+        CompletableFuture<ChatCompletion> leader = inFlight.putIfAbsent(dedupKey, mine);
+        if (leader != null) {
+            return new ChatCompletion(awaitLeader(leader).getContent(), null);
+        }
+        try {
+            ChatCompletion completion = guardedComplete(messages);
+            mine.complete(completion);
+            return completion;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(dedupKey, mine);
+        }
+    }
+
+    /**
+     * Streaming poziv (stream=true). Mesto u bulkhead-u se zauzima odmah, na pozivajućoj niti,
+     * tako da odbijanje stiže kao izuzetak pre nego što se otvori SSE; oslobađa se kada se
+     * Flux završi ili otkaže. {@code usageListener} dobija potrošnju iz poslednjeg chunk-a,
+     * ako je upstream prijavi (stream_options.include_usage).
+     */
+    public Flux<String> stream(List<Map<String, String>> messages, Consumer<TokenUsage> usageListener) {
+        boolean trial = acquire();
+        AtomicBoolean released = new AtomicBoolean();
+
+        // Fallback ima smisla samo dok korisnik još nije dobio nijedan token
+        AtomicBoolean started = new AtomicBoolean();
+        return streamAttempt(webClient, model, messages, usageListener)
+                .doOnNext(delta -> started.set(true))
+                .onErrorResume(e -> fallbackModel != null && !started.get() && isRetryable(e), e -> {
+                    fallbacks.increment();
+                    log.warn("OpenAI stream fallback na {}: {}", fallbackModel, describe(e));
+                    return streamAttempt(fallbackWebClient, fallbackModel, messages, usageListener);
+                })
+                .doOnComplete(this::recordSuccess)
+                .doOnError(this::recordFailure)
+                .doOnCancel(() -> {
+                    // Otkazan probni poziv ne govori ništa o upstream-u - sledeći zahtev može da proba.
+                    // Samo pretplata koja drži probu sme da je pusti.
+                    if (trial) {
+                        halfOpenTrial.set(false);
+                    }
+                })
+                .doFinally(signal -> {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("available", permits.availablePermits());
+        stats.put("waiting", waiting.get());
+        stats.put("inFlightDeduplicated", inFlight.size());
+        stats.put("consecutiveFailures", consecutiveFailures.get());
+        stats.put("circuitOpen", System.currentTimeMillis() < openUntil);
+        stats.put("p95Millis", latency.percentile(0.95, 0, 1));
+        stats.put("hedgeDelayMillis", hedgeDelayMillis());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgesSkipped", hedgesSkipped.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        return stats;
+    }
+
+    private ChatCompletion guardedComplete(List<Map<String, String>> messages) {
+        acquire();
+        try {
+            ChatCompletionResponse response = hedgedPrimary(messages)
+                    .timeout(Duration.ofMillis(primaryBudgetMillis))
+                    .onErrorResume(e -> fallbackModel != null && isRetryable(e), e -> {
+                        fallbacks.increment();
+                        log.warn("OpenAI fallback na {}: {}", fallbackModel, describe(e));
+                        return attempt(fallbackWebClient, fallbackModel, messages);
+                    })
+                    .block();
+            recordSuccess();
+            if (response == null) {
+                return new ChatCompletion(null, null);
+            }
+            TokenUsage usage = response.usage != null ? response.usage.toTokenUsage() : null;
+            if (response.choices == null || response.choices.isEmpty() || response.choices.get(0).message == null) {
+                return new ChatCompletion(null, usage);
+            }
+            return new ChatCompletion(response.choices.get(0).message.content, usage);
+        } catch (RuntimeException e) {
+            Throwable cause = Exceptions.unwrap(e);
+            recordFailure(cause);
+            if (cause instanceof TimeoutException) {
+                // p99 je ograničen politikom, ne ponašanjem upstream-a
+                throw new OpenAIUnavailableException("OpenAI nije odgovorio na vreme", 1);
+            }
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Primarni poziv; ako ne završi za p95 vreme, šalje se identičan drugi zahtev.
+     * Prvi uspešan odgovor pobeđuje, a drugi se otkazuje (firstWithValue otkazuje ostale izvore).
+     * Hedge zauzima svoje mesto u bulkhead-u; ako slobodnog nema, ne šalje se, pa upstream
+     * nikada nema više od {@code maxConcurrent} poziva.
+     */
+    private Mono<ChatCompletionResponse> hedgedPrimary(List<Map<String, String>> messages) {
+        if (!hedgeEnabled) {
+            return attempt(webClient, model, messages);
+        }
+        Sinks.One<Boolean> primaryFailed = Sinks.one();
+        Mono<ChatCompletionResponse> primary = attempt(webClient, model, messages)
+                .doOnError(e -> primaryFailed.tryEmitValue(true));
+        // Ako primarni već pukne, hedge se ne šalje (greška se ionako vraća pozivaocu)
+        Mono<ChatCompletionResponse> hedge = Mono.delay(Duration.ofMillis(hedgeDelayMillis()))
+                .takeUntilOther(primaryFailed.asMono())
+                .flatMap(tick -> {
+                    if (!permits.tryAcquire()) {
+                        hedgesSkipped.increment();
+                        return Mono.<ChatCompletionResponse>empty();
+                    }
+                    hedges.increment();
+                    return attempt(webClient, model, messages)
+                            .doFinally(signal -> permits.release());
+                });
+        // Kad nijedan ne uspe, firstWithValue vraća NoSuchElementException sa CompositeException
+        // uzrokom; pozivaocu vraćamo grešku primarnog zahteva
+        return Mono.firstWithValue(primary, hedge)
+                .onErrorMap(NoSuchElementException.class, e -> {
+                    Throwable cause = e.getCause();
+                    List<Throwable> errors = cause != null ? Exceptions.unwrapMultiple(cause) : List.of();
+                    return errors.isEmpty() ? e : errors.get(0);
+                });
+    }
+
+    private Mono<ChatCompletionResponse> attempt(WebClient client, String attemptModel, List<Map<String, String>> messages) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return client.post()
+                    .uri("/chat/completions")
+                    .bodyValue(newRequest(attemptModel, messages))
+                    .retrieve()
+                    .bodyToMono(ChatCompletionResponse.class)
+                    .timeout(Duration.ofMillis(attemptTimeoutMillis))
+                    .doOnSuccess(response -> {
+                        if (client == webClient && attemptModel.equals(model)) {
+                            latency.record((System.nanoTime() - start) / 1_000_000L);
+                        }
+                    });
+        });
+    }
+
+    private Flux<String> streamAttempt(WebClient client, String attemptModel, List<Map<String, String>> messages,
+                                       Consumer<TokenUsage> usageListener) {
+        ChatCompletionRequest request = newRequest(attemptModel, messages);
+        request.stream = true;
+        request.streamOptions = Map.of("include_usage", true);
+
+        return client.post()
+                .uri("/chat/completions")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(request)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                // Rok do prvog chunk-a, pa rok između chunk-ova
+                .timeout(Mono.delay(Duration.ofMillis(attemptTimeoutMillis)),
+                        event -> Mono.delay(Duration.ofMillis(streamIdleTimeoutMillis)))
+                .map(ServerSentEvent::data)
+                .filter(Objects::nonNull)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .map(data -> parseStreamDelta(data, usageListener))
+                .filter(delta -> !delta.isEmpty());
+    }
+
+    private long hedgeDelayMillis() {
+        long p95 = latency.percentile(0.95, hedgeMaxDelayMillis, 20);
+        return Math.max(hedgeMinDelayMillis, Math.min(hedgeMaxDelayMillis, p95));
+    }
+
+    private boolean isRetryable(Throwable error) {
+        if (error instanceof TimeoutException || error instanceof WebClientRequestException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException e) {
+            int status = e.getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    // Vraća true ako je ovaj poziv half-open probni poziv
+    private boolean acquire() {
+        boolean trial = checkCircuit();
+        try {
+            if (permits.tryAcquire()) {
+                return trial;
+            }
+            if (waiting.incrementAndGet() > maxQueued) {
+                waiting.decrementAndGet();
+                throw new OpenAIUnavailableException("OpenAI red čekanja je pun", 1);
+            }
+            try {
+                if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new OpenAIUnavailableException("OpenAI je trenutno preopterećen", 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OpenAIUnavailableException("Prekinuto čekanje na OpenAI", 1);
+            } finally {
+                waiting.decrementAndGet();
+            }
+            return trial;
+        } catch (OpenAIUnavailableException e) {
+            if (trial) {
+                // Probni poziv nije ni krenuo - sledeći zahtev može da proba
+                halfOpenTrial.set(false);
+            }
+            throw e;
+        }
+    }
+
+    // Vraća true ako je ovaj poziv half-open probni poziv
+    private boolean checkCircuit() {
+        long until = openUntil;
+        if (until == 0) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < until) {
+            throw new OpenAIUnavailableException("OpenAI privremeno odbija zahteve", Math.max(1, (until - now + 999) / 1000));
+        }
+        // Half-open: propusti tačno jedan probni poziv, ostale odbij dok on ne završi
+        if (!halfOpenTrial.compareAndSet(false, true)) {
+            throw new OpenAIUnavailableException("OpenAI privremeno odbija zahteve", 1);
+        }
+        return true;
+    }
+
+    private void recordSuccess() {
+        consecutiveFailures.set(0);
+        openUntil = 0;
+        halfOpenTrial.set(false);
+    }
+
+    private void recordFailure(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            int status = e.getStatusCode().value();
+            if (status != 429 && status < 500) {
+                // Greška u zahtevu (400, 401...) - upstream je zdrav
+                recordSuccess();
+                return;
+            }
+        }
+        boolean trialFailed = halfOpenTrial.getAndSet(false);
+        if (trialFailed || consecutiveFailures.incrementAndGet() >= breakerFailureThreshold) {
+            long openFor = Math.max(breakerOpenMillis, retryAfterMillis(error));
+            openUntil = System.currentTimeMillis() + openFor;
+            log.warn("OpenAI circuit breaker otvoren na {} ms ({})", openFor, describe(error));
+        }
+    }
+
+    // Tip greške i HTTP status, bez tela odgovora
+    private static String describe(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            return "HTTP " + e.getStatusCode().value();
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private long retryAfterMillis(Throwable error) {
+        if (error instanceof WebClientResponseException e) {
+            String retryAfter = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+            if (retryAfter != null) {
+                try {
+                    return Long.parseLong(retryAfter.trim()) * 1000L;
+                } catch (NumberFormatException ignored) {
+                    // HTTP-date format - koristi podrazumevano vreme
+                }
+            }
+        }
+        return 0;
+    }
+
+    // SHA-256 serijalizovanog zahteva (model + sve poruke)
+    private String requestDigest(List<Map<String, String>> messages) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(objectMapper.writeValueAsBytes(messages));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ChatCompletion awaitLeader(CompletableFuture<ChatCompletion> leader) {
+        try {
+            return leader.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OpenAIUnavailableException("Prekinuto čekanje na OpenAI", 1);
+        }
+    }
+
+    private ChatCompletionRequest newRequest(String requestModel, List<Map<String, String>> messages) {
+        ChatCompletionRequest request = new ChatCompletionRequest();
+        request.model = requestModel;
+        request.messages = messages;
+        request.temperature = 0.7;
+        request.maxTokens = 500;
+        return request;
+    }
+
+    private String parseStreamDelta(String data, Consumer<TokenUsage> usageListener) {
+        try {
+            StreamChunk chunk = objectMapper.readValue(data, StreamChunk.class);
+            if (chunk.usage != null && usageListener != null) {
+                usageListener.accept(chunk.usage.toTokenUsage());
+            }
+            if (chunk.choices == null || chunk.choices.isEmpty() || chunk.choices.get(0).delta == null) {
+                return "";
+            }
+            String content = chunk.choices.get(0).delta.content;
+            return content != null ? content : "";
+        } catch (IOException e) {
+            // Sadržaj chunk-a se ne loguje - to je deo odgovora korisniku
+            log.debug("Neispravan OpenAI stream chunk ({} znakova)", data.length());
+            return "";
+        }
+    }
+
+    // OpenAI API request/response klase
+    private static class ChatCompletionRequest {
+        @JsonProperty("model")
+        public String model;
+
+        @JsonProperty("messages")
+        public List<Map<String, String>> messages;
+
+        @JsonProperty("temperature")
+        public Double temperature;
+
+        @JsonProperty("max_tokens")
+        public Integer maxTokens;
+
+        @JsonProperty("stream")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public Boolean stream;
+
+        @JsonProperty("stream_options")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public Map<String, Object> streamOptions;
+    }
+
+    private static class ChatCompletionResponse {
+        public List<Choice> choices;
+        public Usage usage;
+    }
+
+    private static class Usage {
+        @JsonProperty("prompt_tokens")
+        public int promptTokens;
+
+        @JsonProperty("completion_tokens")
+        public int completionTokens;
+
+        TokenUsage toTokenUsage() {
+            return new TokenUsage(promptTokens, completionTokens);
+        }
+    }
+
+    private static class Choice {
+        public Message message;
+    }
+
+    private static class Message {
+        public String role;
+        public String content;
+    }
+
+    // Jedan "data:" chunk iz stream=true odgovora
+    private static class StreamChunk {
+        public List<StreamChoice> choices;
+        // Samo u poslednjem chunk-u, uz stream_options.include_usage
+        public Usage usage;
+    }
+
+    private static class StreamChoice {
+        public Message delta;
+    }
+}
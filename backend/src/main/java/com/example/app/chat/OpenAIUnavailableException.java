@@ -0,0 +1,21 @@
+package com.example.app.chat;
+
+/**
+ * OpenAI poziv nije ni pokušan: bulkhead je pun ili je circuit breaker otvoren.
+ * Kontroler ovo mapira na 503 sa Retry-After zaglavljem.
+ */
+public class OpenAIUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public OpenAIUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.app.chat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nepromenljiv, jednom parsiran šablon za prompt (podskup mustache sintakse):
+ * {@code {{ime}}} ubacuje vrednost, a {@code {{#ime}}...{{/ime}}} se ispisuje samo ako vrednost postoji.
+ *
+ * Vodeći statički tekst (sve do prve promenljive ili sekcije) čuva se kao jedan deljeni String,
+ * pa je prefiks bajt-identičan za sve korisnike (OpenAI prompt caching) i služi kao otisak
+ * za ključ keša odgovora. Po zahtevu se renderuje samo ostatak.
+ */
+public final class PromptTemplate {
+
+    private final String staticPrefix;
+    private final List<Segment> dynamicSegments;
+
+    private PromptTemplate(String staticPrefix, List<Segment> dynamicSegments) {
+        this.staticPrefix = staticPrefix;
+        this.dynamicSegments = List.copyOf(dynamicSegments);
+    }
+
+    public static PromptTemplate parse(String source) {
+        // Otvorene sekcije tokom parsiranja; Section nastaje tek kada se zatvori, sa već gotovom listom
+        Deque<String> openNames = new ArrayDeque<>();
+        Deque<List<Segment>> openChildren = new ArrayDeque<>();
+        List<Segment> root = new ArrayList<>();
+        List<Segment> current = root;
+        int position = 0;
+        while (position < source.length()) {
+            int start = source.indexOf("{{", position);
+            if (start < 0) {
+                current.add(new Text(source.substring(position)));
+                break;
+            }
+            if (start > position) {
+                current.add(new Text(source.substring(position, start)));
+            }
+            int end = source.indexOf("}}", start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Nezatvoren tag na poziciji " + start);
+            }
+            String tag = source.substring(start + 2, end).trim();
+            if (tag.startsWith("#")) {
+                openNames.push(tag.substring(1).trim());
+                openChildren.push(current);
+                current = new ArrayList<>();
+            } else if (tag.startsWith("/")) {
+                String name = tag.substring(1).trim();
+                if (openNames.isEmpty() || !openNames.peek().equals(name)) {
+                    throw new IllegalArgumentException("Neočekivan kraj sekcije {{/" + name + "}} na poziciji " + start);
+                }
+                Section section = new Section(openNames.pop(), current);
+                current = openChildren.pop();
+                current.add(section);
+            } else if (tag.isEmpty()) {
+                throw new IllegalArgumentException("Prazan tag na poziciji " + start);
+            } else {
+                current.add(new Variable(tag));
+            }
+            position = end + 2;
+        }
+        if (!openNames.isEmpty()) {
+            throw new IllegalArgumentException("Nezatvorena sekcija {{#" + openNames.peek() + "}}");
+        }
+
+        // Spoji vodeće tekstualne segmente u statički prefiks
+        StringBuilder prefix = new StringBuilder();
+        int first = 0;
+        while (first < root.size() && root.get(first) instanceof Text text) {
+            prefix.append(text.value);
+            first++;
+        }
+        return new PromptTemplate(prefix.toString(), root.subList(first, root.size()));
+    }
+
+    public String getStaticPrefix() {
+        return staticPrefix;
+    }
+
+    public String render(Map<String, String> values) {
+        StringBuilder out = new StringBuilder(staticPrefix.length() + 128);
+        out.append(staticPrefix);
+        renderAll(dynamicSegments, values, out);
+        return out.toString();
+    }
+
+    private static void renderAll(List<Segment> segments, Map<String, String> values, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.render(values, out);
+        }
+    }
+
+    private interface Segment {
+        void render(Map<String, String> values, StringBuilder out);
+    }
+
+    private static final class Text implements Segment {
+        final String value;
+
+        Text(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void render(Map<String, String> values, StringBuilder out) {
+            out.append(value);
+        }
+    }
+
+    private static final class Variable implements Segment {
+        final String name;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void render(Map<String, String> values, StringBuilder out) {
+            String value = values.get(name);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+    }
+
+    private static final class Section implements Segment {
+        final String name;
+        final List<Segment> children;
+
+        Section(String name, List<Segment> children) {
+            this.name = name;
+            this.children = List.copyOf(children);
+        }
+
+        @Override
+        public void render(Map<String, String> values, StringBuilder out) {
+            String value = values.get(name);
+            if (value != null && !value.isEmpty()) {
+                renderAll(children, values, out);
+            }
+        }
+    }
+}
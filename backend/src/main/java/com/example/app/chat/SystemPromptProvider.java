@@ -0,0 +1,87 @@
+package com.example.app.chat;
+
+import com.example.app.user.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * System prompt za BioZen asistenta iz spoljnog šablona ({@code app.chat.prompt.location}).
+ *
+ * Šablon se parsira jednom u {@link PromptTemplate}; kada je lokacija fajl na disku
+ * (npr. {@code file:/etc/biozen/system-prompt.txt}), izmene se učitavaju bez redeploy-a.
+ * Neispravan šablon pri ponovnom učitavanju se ignoriše i ostaje prethodna verzija.
+ */
+@Component
+public class SystemPromptProvider {
+
+    private final Resource resource;
+    private volatile PromptTemplate template;
+    private volatile long lastModified;
+
+    public SystemPromptProvider(ResourceLoader resourceLoader,
+                                @Value("${app.chat.prompt.location:classpath:prompts/system-prompt.txt}") String location) {
+        this.resource = resourceLoader.getResource(location);
+        try {
+            this.lastModified = lastModifiedOf(resource);
+            this.template = load(resource);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Ne mogu da učitam šablon system prompt-a: " + location, e);
+        }
+    }
+
+    // Deo prompt-a koji je isti za sve korisnike (koristi se i za ključ keša odgovora)
+    public String basePrompt() {
+        return template.getStaticPrefix();
+    }
+
+    public String render(User user) {
+        Map<String, String> values = new HashMap<>();
+        values.put("ime", user.getIme());
+        values.put("kilaza", user.getKilaza() != null ? String.valueOf(user.getKilaza()) : null);
+        values.put("zeljenaKilaza", user.getZeljenaKilaza() != null ? String.valueOf(user.getZeljenaKilaza()) : null);
+        return template.render(values);
+    }
+
+    @Scheduled(fixedDelayString = "${app.chat.prompt.reload-interval-millis:10000}")
+    public void reloadIfChanged() {
+        if (!resource.isFile()) {
+            return; // classpath unutar jar-a se ne menja
+        }
+        try {
+            long modified = lastModifiedOf(resource);
+            if (modified == lastModified) {
+                return;
+            }
+            template = load(resource);
+            lastModified = modified;
+            System.out.println("System prompt šablon ponovo učitan: " + resource.getDescription());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("System prompt šablon nije ponovo učitan: " + e.getMessage());
+        }
+    }
+
+    private static PromptTemplate load(Resource resource) throws IOException {
+        String source;
+        try (InputStream in = resource.getInputStream()) {
+            source = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        // Editori dodaju završni prelom reda; on nije deo prompt-a
+        if (source.endsWith("\n")) {
+            source = source.substring(0, source.length() - 1);
+        }
+        return PromptTemplate.parse(source);
+    }
+
+    private static long lastModifiedOf(Resource resource) throws IOException {
+        return resource.isFile() ? resource.lastModified() : 0L;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.app.chat;
+
+/**
+ * Gruba lokalna procena broja tokena, bez tokenizer biblioteke.
+ *
+ * BPE tokenizeri za latinicu daju oko 4 znaka po tokenu; naša slova sa dijakritikom (č, ć, š, ž, đ)
+ * su više bajtova i češće se cepaju, pa se računaju duplo. Procena je namerno malo pesimistična,
+ * da budžet ne bi bio prekoračen.
+ */
+final class TokenEstimator {
+
+    // Režija po poruci u chat formatu (role, separatori)
+    static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private TokenEstimator() {
+    }
+
+    static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int weight = 0;
+        for (int i = 0; i < text.length(); i++) {
+            weight += text.charAt(i) < 128 ? 1 : 2;
+        }
+        return (weight + 3) / 4;
+    }
+
+    static int estimateMessage(String content) {
+        return estimate(content) + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.app.chat;
+
+/**
+ * Potrošnja tokena jednog OpenAI poziva (iz {@code usage} bloka odgovora).
+ */
+public final class TokenUsage {
+
+    private final int promptTokens;
+    private final int completionTokens;
+
+    public TokenUsage(int promptTokens, int completionTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public int getPromptTokens() { return promptTokens; }
+    public int getCompletionTokens() { return completionTokens; }
+    public int getTotalTokens() { return promptTokens + completionTokens; }
+}
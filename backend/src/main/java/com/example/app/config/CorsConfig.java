@@ -1,10 +0,0 @@
-package com.example.app.config;
-
-// CORS je sada konfigurisan samo u SecurityConfig.java
-// Ova klasa je onemogućena da izbegnemo konflikte
-// Ako treba, možeš obrisati ovaj fajl potpuno
-
-// @Configuration
-public class CorsConfig {
-    // Klasa je onemogućena - CORS se konfiguriše u SecurityConfig.java
-}
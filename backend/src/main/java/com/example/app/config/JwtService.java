@@ -3,30 +3,72 @@ package com.example.app.config;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JwtService {
 
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
     private final Key key;
-    private final long ttl;
+    // Access token je kratkog veka; refresh token traje koliko i sesija
+    private final long accessTtl;
+    private final long refreshTtl;
+    // Parser je nepromenljiv i thread-safe - pravi se jednom
+    private final JwtParser parser;
+
+    // Već verifikovani tokeni, po SHA-256 otisku (sirovi token se ne čuva u memoriji)
+    private final ConcurrentHashMap<ByteBuffer, VerifiedToken> verified = new ConcurrentHashMap<>();
+    private final int cacheMaxEntries;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     public JwtService(@Value("${app.jwt.secret}") String secret,
-                      @Value("${app.jwt.ttlMillis}") long ttlMillis) {
+                      @Value("${app.jwt.ttlMillis}") long ttlMillis,
+                      @Value("${app.jwt.access-ttl-millis:900000}") long accessTtlMillis,
+                      @Value("${app.jwt.cache.max-entries:10000}") int cacheMaxEntries) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
-        this.ttl = ttlMillis;
+        this.refreshTtl = ttlMillis;
+        this.accessTtl = Math.min(accessTtlMillis, ttlMillis);
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.cacheMaxEntries = Math.max(0, cacheMaxEntries);
+    }
+
+    public String generateAccessToken(String subject, Map<String, Object> claims) {
+        return generate(subject, claims, TYPE_ACCESS, accessTtl);
+    }
+
+    public String generateRefreshToken(String subject, Map<String, Object> claims) {
+        return generate(subject, claims, TYPE_REFRESH, refreshTtl);
+    }
+
+    public long getAccessTtlMillis() {
+        return accessTtl;
     }
 
-    public String generate(String subject, Map<String, Object> claims) {
+    private String generate(String subject, Map<String, Object> claims, String type, long ttl) {
         long now = System.currentTimeMillis();
         return Jwts.builder()
                 .setSubject(subject)
                 .addClaims(claims)
+                .claim("typ", type)
                 .setIssuedAt(new Date(now))
                 .setExpiration(new Date(now + ttl))
                 .signWith(key, SignatureAlgorithm.HS256)
@@ -34,7 +76,85 @@ public class JwtService {
     }
 
     public Jws<Claims> parse(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return parser.parseClaimsJws(token);
     }
-}
 
+    /**
+     * Verifikuje token i vraća ono što je filteru potrebno. Isti token stiže stotine puta
+     * tokom sesije, pa se posle prve provere potpisa rezultat čita iz keša do isteka tokena.
+     *
+     * @throws JwtException ako token nije validan ili je istekao
+     */
+    public VerifiedToken verify(String token) {
+        ByteBuffer digest = ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+        long now = System.currentTimeMillis();
+
+        VerifiedToken cached = verified.get(digest);
+        if (cached != null) {
+            if (cached.getExpiresAt() > now) {
+                return cached;
+            }
+            verified.remove(digest, cached);
+        }
+
+        // Baca izuzetak za neispravan potpis ili istekao token; takvi se ne keširaju
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Date expiration = claims.getExpiration();
+        Object version = claims.get("ver");
+        VerifiedToken result = new VerifiedToken(
+                claims.getSubject(),
+                (String) claims.get("role"),
+                version instanceof Number number ? number.intValue() : null,
+                // Tokeni izdati pre uvođenja tipa su bili jedini (access) tokeni
+                claims.get("typ") != null ? (String) claims.get("typ") : TYPE_ACCESS,
+                expiration != null ? expiration.getTime() : Long.MAX_VALUE);
+
+        if (cacheMaxEntries > 0) {
+            if (verified.size() >= cacheMaxEntries) {
+                evictExpired();
+                if (verified.size() >= cacheMaxEntries) {
+                    // Još uvek puno - počni iz početka umesto skupog LRU praćenja
+                    verified.clear();
+                }
+            }
+            verified.put(digest, result);
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.cache.sweep-interval-millis:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        verified.values().removeIf(token -> token.getExpiresAt() <= now);
+    }
+
+    /**
+     * Nepromenljiv rezultat verifikacije tokena.
+     */
+    public static final class VerifiedToken {
+        private final String subject;
+        private final String role;
+        // null za tokene izdate pre uvođenja verzija
+        private final Integer tokenVersion;
+        private final String type;
+        private final long expiresAt;
+
+        VerifiedToken(String subject, String role, Integer tokenVersion, String type, long expiresAt) {
+            this.subject = subject;
+            this.role = role;
+            this.tokenVersion = tokenVersion;
+            this.type = type;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getSubject() { return subject; }
+        public String getRole() { return role; }
+        public Integer getTokenVersion() { return tokenVersion; }
+        public String getType() { return type; }
+        public long getExpiresAt() { return expiresAt; }
+
+        public boolean isRefresh() {
+            return TYPE_REFRESH.equals(type);
+        }
+    }
+}
@@ -1,37 +1,68 @@
 package com.example.app.config;
 
 import com.example.app.config.JwtAuthFilter;
-import com.example.app.config.SimpleCorsFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
-import org.springframework.web.cors.CorsConfiguration;
-import org.springframework.web.cors.CorsConfigurationSource;
-import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
-import org.springframework.web.filter.CorsFilter;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
-import java.util.Arrays;
-import java.util.List;
+
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
 @Configuration
 public class SecurityConfig {
 
     private final JwtAuthFilter jwtFilter;
-    private final SimpleCorsFilter simpleCorsFilter;
 
-    public SecurityConfig(JwtAuthFilter jwtFilter, SimpleCorsFilter simpleCorsFilter) {
+    public SecurityConfig(JwtAuthFilter jwtFilter) {
         this.jwtFilter = jwtFilter;
-        this.simpleCorsFilter = simpleCorsFilter;
+    }
+
+    /**
+     * Lak lanac za javna, anonimna čitanja (GET/HEAD blogova i upload-ovanih fajlova).
+     *
+     * Nema JWT filtera, security konteksta, sesije, request cache-a, anonimne autentifikacije
+     * ni autorizacije, pa takav zahtev prolazi kroz svega nekoliko filtera. Cache-Control ovde
+     * ne dodaje Spring Security, da bi odgovori mogli da se keširaju.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain publicReadFilterChain(HttpSecurity http) throws Exception {
+        http.securityMatcher(new OrRequestMatcher(
+            antMatcher(HttpMethod.GET, "/api/blog/**"),
+            antMatcher(HttpMethod.HEAD, "/api/blog/**"),
+            antMatcher(HttpMethod.GET, "/api/admin/upload/files/**"),
+            antMatcher(HttpMethod.HEAD, "/api/admin/upload/files/**")
+        ));
+        http.csrf(csrf -> csrf.disable());
+        http.cors(cors -> cors.disable());
+        http.securityContext(context -> context.disable());
+        http.sessionManagement(session -> session.disable());
+        http.requestCache(cache -> cache.disable());
+        http.anonymous(anonymous -> anonymous.disable());
+        http.servletApi(servletApi -> servletApi.disable());
+        http.logout(logout -> logout.disable());
+        http.httpBasic(basic -> basic.disable());
+        http.formLogin(form -> form.disable());
+        http.headers(headers -> headers.cacheControl(cacheControl -> cacheControl.disable()));
+        return http.build();
     }
 
     @Bean
+    @Order(2)
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(csrf -> csrf.disable());
-        http.cors(cors -> cors.configurationSource(corsConfigurationSource()));
+        // CORS (i preflight) rešava SimpleCorsFilter pre security lanca
+        http.cors(cors -> cors.disable());
         http.authorizeHttpRequests(auth -> auth
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()  // SSE/async odgovori su već autorizovani u REQUEST dispatch-u
                 .requestMatchers("/api/auth/**").permitAll()   // register/login javne
                 .requestMatchers("/api/blog/**").permitAll()   // blog javni (published blogovi)
                 .requestMatchers("/api/admin/upload/files/**").permitAll()  // uploaded files javni
@@ -42,66 +73,29 @@ public class SecurityConfig {
         http.httpBasic(basic -> basic.disable());
         http.formLogin(form -> form.disable());
         
-        // Add CORS headers to error responses (403, 401, etc.)
+        // CORS zaglavlja je već postavio SimpleCorsFilter (ispred security lanca)
         http.exceptionHandling(exceptions -> exceptions
             .accessDeniedHandler((request, response, accessDeniedException) -> {
-                // Add CORS headers before sending error response
-                String origin = request.getHeader("Origin");
-                if (origin != null && !origin.isEmpty()) {
-                    response.setHeader("Access-Control-Allow-Origin", origin);
-                    response.setHeader("Access-Control-Allow-Credentials", "true");
-                } else {
-                    response.setHeader("Access-Control-Allow-Origin", "*");
-                }
-                response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, PATCH");
-                response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With, Accept, Origin");
-                response.setHeader("Access-Control-Expose-Headers", "Authorization");
                 response.setStatus(HttpServletResponse.SC_FORBIDDEN);
                 response.setContentType("application/json");
                 response.getWriter().write("{\"message\":\"Nedovoljno dozvola\",\"error\":\"Forbidden\"}");
             })
             .authenticationEntryPoint((request, response, authException) -> {
-                // Add CORS headers before sending error response
-                String origin = request.getHeader("Origin");
-                if (origin != null && !origin.isEmpty()) {
-                    response.setHeader("Access-Control-Allow-Origin", origin);
-                    response.setHeader("Access-Control-Allow-Credentials", "true");
-                } else {
-                    response.setHeader("Access-Control-Allow-Origin", "*");
-                }
-                response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, PATCH");
-                response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With, Accept, Origin");
-                response.setHeader("Access-Control-Expose-Headers", "Authorization");
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.setContentType("application/json");
                 response.getWriter().write("{\"message\":\"Niste autentifikovani\",\"error\":\"Unauthorized\"}");
             })
         );
-        
-        // CORS filter mora biti prvi - SimpleCorsFilter ima HIGHEST_PRECEDENCE
-        http.addFilterBefore(simpleCorsFilter, UsernamePasswordAuthenticationFilter.class);
-        http.addFilterBefore(corsFilter(), UsernamePasswordAuthenticationFilter.class);
+
         http.addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
 
+    // JwtAuthFilter radi samo unutar glavnog security lanca, ne i kao samostalan servlet filter
     @Bean
-    public CorsFilter corsFilter() {
-        return new CorsFilter(corsConfigurationSource());
-    }
-
-    @Bean
-    public CorsConfigurationSource corsConfigurationSource() {
-        CorsConfiguration configuration = new CorsConfiguration();
-        configuration.setAllowedOriginPatterns(List.of("*"));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(List.of("*"));
-        configuration.setAllowCredentials(false);
-        configuration.setMaxAge(3600L);
-        
-        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
-        source.registerCorsConfiguration("/api/**", configuration);
-        return source;
+    public FilterRegistrationBean<JwtAuthFilter> jwtAuthFilterRegistration(JwtAuthFilter filter) {
+        FilterRegistrationBean<JwtAuthFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
     }
 }
-
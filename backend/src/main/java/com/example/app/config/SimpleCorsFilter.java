@@ -7,44 +7,100 @@ import jakarta.servlet.ServletRequest;
 import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
 
+/**
+ * Jedino mesto za CORS u aplikaciji; radi kao servlet filter ispred Spring Security lanca.
+ *
+ * Origin se proverava jednim lookup-om u skupu dozvoljenih ({@code app.cors.allowed-origins}),
+ * a vrednosti zaglavlja su napravljene pri startu. Preflight od dozvoljenog origin-a dobija
+ * odgovor odmah, bez security lanca, i browser ga kešira {@code max-age} sekundi.
+ * Zaglavlja se postavljaju pre lanca, pa ih imaju i 401/403 odgovori.
+ * Nepoznat origin ne dobija CORS zaglavlja (browser blokira odgovor), a njegov preflight dobija 403.
+ */
 @Component
 @Order(Ordered.HIGHEST_PRECEDENCE)
 public class SimpleCorsFilter implements Filter {
 
+    private final Set<String> allowedOrigins;
+    private final String allowedMethods;
+    private final String allowedHeaders;
+    private final String exposedHeaders;
+    private final String maxAge;
+
+    public SimpleCorsFilter(@Value("${app.cors.allowed-origins:https://app.biozen.rs,https://dev.biozen.rs,http://localhost:5173}") String allowedOrigins,
+                            @Value("${app.cors.allowed-methods:GET, POST, PUT, DELETE, OPTIONS, PATCH}") String allowedMethods,
+                            @Value("${app.cors.allowed-headers:Authorization, Content-Type, X-Requested-With, Accept, Origin, If-None-Match, If-Modified-Since}") String allowedHeaders,
+                            @Value("${app.cors.exposed-headers:Authorization, Retry-After}") String exposedHeaders,
+                            @Value("${app.cors.max-age-seconds:86400}") long maxAgeSeconds) {
+        Set<String> origins = new HashSet<>();
+        for (String origin : allowedOrigins.split(",")) {
+            String normalized = normalize(origin.trim());
+            if (!normalized.isEmpty()) {
+                origins.add(normalized);
+            }
+        }
+        this.allowedOrigins = Set.copyOf(origins);
+        this.allowedMethods = allowedMethods;
+        this.allowedHeaders = allowedHeaders;
+        this.exposedHeaders = exposedHeaders;
+        this.maxAge = String.valueOf(maxAgeSeconds);
+        System.out.println("CORS dozvoljeni origin-i: " + this.allowedOrigins);
+    }
+
     @Override
     public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
             throws IOException, ServletException {
-        
+
         HttpServletRequest request = (HttpServletRequest) req;
         HttpServletResponse response = (HttpServletResponse) res;
 
-        // CORS headers - dodaj uvek
         String origin = request.getHeader("Origin");
-        if (origin != null && !origin.isEmpty()) {
+        if (origin == null) {
+            // Isti origin ili ne-browser klijent - CORS nije potreban
+            chain.doFilter(req, res);
+            return;
+        }
+
+        // Odgovor zavisi od Origin-a, pa keševi ne smeju da ga dele između origin-a
+        response.addHeader("Vary", "Origin");
+        boolean allowed = allowedOrigins.contains(origin) || allowedOrigins.contains(normalize(origin));
+        boolean preflight = "OPTIONS".equals(request.getMethod())
+            && request.getHeader("Access-Control-Request-Method") != null;
+
+        if (preflight) {
+            if (!allowed) {
+                response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+                return;
+            }
             response.setHeader("Access-Control-Allow-Origin", origin);
             response.setHeader("Access-Control-Allow-Credentials", "true");
-        } else {
-            response.setHeader("Access-Control-Allow-Origin", "*");
-        }
-        
-        response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS, PATCH");
-        response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, X-Requested-With, Accept, Origin");
-        response.setHeader("Access-Control-Expose-Headers", "Authorization");
-        response.setHeader("Access-Control-Max-Age", "3600");
-
-        // Handle preflight OPTIONS request
-        if ("OPTIONS".equalsIgnoreCase(request.getMethod())) {
+            response.setHeader("Access-Control-Allow-Methods", allowedMethods);
+            response.setHeader("Access-Control-Allow-Headers", allowedHeaders);
+            response.setHeader("Access-Control-Max-Age", maxAge);
             response.setStatus(HttpServletResponse.SC_OK);
             return;
         }
 
+        if (allowed) {
+            response.setHeader("Access-Control-Allow-Origin", origin);
+            response.setHeader("Access-Control-Allow-Credentials", "true");
+            response.setHeader("Access-Control-Expose-Headers", exposedHeaders);
+        }
         chain.doFilter(req, res);
     }
-}
 
+    // Origin je šema + host (+ port): bez završne kose crte, host bez obzira na velika slova
+    private static String normalize(String origin) {
+        String value = origin.endsWith("/") ? origin.substring(0, origin.length() - 1) : origin;
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
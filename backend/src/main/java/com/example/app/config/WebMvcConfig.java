@@ -0,0 +1,25 @@
+package com.example.app.config;
+
+import com.example.app.user.UserPrincipalArgumentResolver;
+import com.example.app.user.UserStatusCache;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final UserStatusCache userStatusCache;
+
+    public WebMvcConfig(UserStatusCache userStatusCache) {
+        this.userStatusCache = userStatusCache;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        // Kontroleri dobijaju razrešenog korisnika umesto da sami čitaju tabelu users
+        resolvers.add(new UserPrincipalArgumentResolver(userStatusCache));
+    }
+}
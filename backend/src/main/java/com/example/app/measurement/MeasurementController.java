@@ -1,9 +1,7 @@
 package com.example.app.measurement;
 
-import com.example.app.user.User;
-import com.example.app.user.UserRepository;
+import com.example.app.user.UserPrincipal;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
@@ -17,54 +15,34 @@ import java.util.Optional;
 public class MeasurementController {
 
     private final MeasurementRepository measurementRepository;
-    private final UserRepository userRepository;
 
-    public MeasurementController(MeasurementRepository measurementRepository, UserRepository userRepository) {
+    public MeasurementController(MeasurementRepository measurementRepository) {
         this.measurementRepository = measurementRepository;
-        this.userRepository = userRepository;
     }
 
     @GetMapping
-    public ResponseEntity<List<Measurement>> getMeasurements(Authentication auth) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<List<Measurement>> getMeasurements(UserPrincipal principal) {
+        if (principal == null) {
             return ResponseEntity.status(401).build();
         }
-
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).build();
-        }
-
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty() || userOpt.get().getIsActive() == null || !userOpt.get().getIsActive()) {
+        if (!principal.isActive()) {
             return ResponseEntity.status(404).build();
         }
+        Long userId = principal.getUserId();
 
         List<Measurement> measurements = measurementRepository.findByUserIdOrderByDatumDesc(userId);
         return ResponseEntity.ok(measurements);
     }
 
     @PostMapping
-    public ResponseEntity<?> createMeasurement(Authentication auth, @RequestBody CreateMeasurementRequest request) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<?> createMeasurement(UserPrincipal principal, @RequestBody CreateMeasurementRequest request) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
-
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
-        }
-
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty() || userOpt.get().getIsActive() == null || !userOpt.get().getIsActive()) {
+        if (!principal.isActive()) {
             return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
         }
+        Long userId = principal.getUserId();
 
         // Proveri da li postoji prethodno merenje za izračunavanje promene
         List<Measurement> previousMeasurements = measurementRepository.findByUserIdOrderByDatumDesc(userId);
@@ -102,23 +80,14 @@ public class MeasurementController {
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteMeasurement(Authentication auth, @PathVariable Long id) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<?> deleteMeasurement(UserPrincipal principal, @PathVariable Long id) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
-
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
-        }
-
-        Optional<User> userOpt = userRepository.findById(userId);
-        if (userOpt.isEmpty() || userOpt.get().getIsActive() == null || !userOpt.get().getIsActive()) {
+        if (!principal.isActive()) {
             return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen ili je deaktiviran"));
         }
+        Long userId = principal.getUserId();
         Optional<Measurement> measurementOpt = measurementRepository.findById(id);
 
         if (measurementOpt.isEmpty() || !measurementOpt.get().getUserId().equals(userId)) {
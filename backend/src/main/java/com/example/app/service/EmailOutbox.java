@@ -0,0 +1,77 @@
+package com.example.app.service;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Email koji čeka slanje. Upisuje se u istoj transakciji kao izmena korisnika
+ * (registracija, zahtev za reset lozinke), a šalje ga {@link EmailOutboxWorker} u pozadini.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = @Index(name = "idx_email_outbox_status_next", columnList = "status, nextAttemptAt"))
+public class EmailOutbox {
+
+    public static final String PENDING = "PENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String htmlBody;
+
+    @Column(nullable = false, length = 20)
+    private String status = PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(nullable = false)
+    private Instant nextAttemptAt = Instant.now();
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    private Instant sentAt;
+
+    public EmailOutbox() {}
+
+    public EmailOutbox(String recipient, String subject, String htmlBody) {
+        this.recipient = recipient;
+        this.subject = subject;
+        this.htmlBody = htmlBody;
+    }
+
+    public Long getId() { return id; }
+    public String getRecipient() { return recipient; }
+    public String getSubject() { return subject; }
+    public String getHtmlBody() { return htmlBody; }
+    public String getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public String getLastError() { return lastError; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getSentAt() { return sentAt; }
+
+    public void setId(Long id) { this.id = id; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+    public void setSubject(String subject) { this.subject = subject; }
+    public void setHtmlBody(String htmlBody) { this.htmlBody = htmlBody; }
+    public void setStatus(String status) { this.status = status; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public void setSentAt(Instant sentAt) { this.sentAt = sentAt; }
+}
@@ -0,0 +1,241 @@
+package com.example.app.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Šalje email-ove iz tabele email_outbox.
+ *
+ * Zakazani poll preuzima dospele poruke jednim {@code UPDATE ... RETURNING} sa
+ * {@code FOR UPDATE SKIP LOCKED} (bezbedno i sa više instanci) i postavlja im lease; slanje radi
+ * ograničen pool niti preko {@link SmtpTransportPool}. Neuspela poruka se ponovo pokušava sa
+ * eksponencijalnim backoff-om, a posle {@code max-attempts} ostaje u statusu FAILED.
+ * Ako instanca padne usred slanja, poruka se ponovo preuzima kada lease istekne.
+ */
+@Component
+public class EmailOutboxWorker {
+
+    private static final String CLAIM =
+        "UPDATE email_outbox SET attempts = attempts + 1, next_attempt_at = ? " +
+        "WHERE id IN (SELECT id FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= ? " +
+        "ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, recipient, subject, html_body, attempts";
+    private static final String MARK_SENT =
+        "UPDATE email_outbox SET status = 'SENT', sent_at = ?, last_error = NULL WHERE id = ?";
+    private static final String MARK_RETRY =
+        "UPDATE email_outbox SET next_attempt_at = ?, last_error = ? WHERE id = ?";
+    private static final String MARK_FAILED =
+        "UPDATE email_outbox SET status = 'FAILED', last_error = ? WHERE id = ?";
+    private static final String DELETE_SENT =
+        "DELETE FROM email_outbox WHERE status = 'SENT' AND sent_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final SmtpTransportPool transportPool;
+    private final String fromEmail;
+    private final String fromName;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long backoffBaseMillis;
+    private final long backoffMaxMillis;
+    private final long leaseMillis;
+    private final int retentionDays;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public EmailOutboxWorker(JdbcTemplate jdbcTemplate,
+                             EmailOutboxRepository outboxRepository,
+                             @Autowired(required = false) JavaMailSender mailSender,
+                             @Value("${app.mail.from:no-reply@biozen.rs}") String fromEmail,
+                             @Value("${app.mail.from-name:BioZen Tracker}") String fromName,
+                             @Value("${app.mail.outbox.workers:2}") int workers,
+                             @Value("${app.mail.outbox.batch-size:20}") int batchSize,
+                             @Value("${app.mail.outbox.max-attempts:8}") int maxAttempts,
+                             @Value("${app.mail.outbox.backoff-base-millis:30000}") long backoffBaseMillis,
+                             @Value("${app.mail.outbox.backoff-max-millis:3600000}") long backoffMaxMillis,
+                             @Value("${app.mail.outbox.lease-millis:120000}") long leaseMillis,
+                             @Value("${app.mail.outbox.smtp-idle-timeout-millis:60000}") long smtpIdleTimeoutMillis,
+                             @Value("${app.mail.outbox.retention-days:7}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.fromEmail = fromEmail;
+        this.fromName = fromName;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffBaseMillis = Math.max(1000, backoffBaseMillis);
+        this.backoffMaxMillis = Math.max(this.backoffBaseMillis, backoffMaxMillis);
+        this.leaseMillis = leaseMillis;
+        this.retentionDays = retentionDays;
+        if (mailSender == null) {
+            System.err.println("WARNING: JavaMailSender is not available. Email outbox poruke se neće slati.");
+        }
+        int poolSize = Math.max(1, workers);
+        // Konekcija se ne deli između niti, pa pool ima najviše po jednu otvorenu po niti
+        this.transportPool = mailSender instanceof JavaMailSenderImpl impl
+            ? new SmtpTransportPool(impl, poolSize, smtpIdleTimeoutMillis)
+            : null;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(this.batchSize), runnable -> {
+                Thread thread = new Thread(runnable, "email-outbox");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-interval-millis:1000}")
+    public void poll() {
+        if (mailSender == null) {
+            return;
+        }
+        // Ne preuzimaj više nego što niti mogu odmah da prime; ostalo čeka u tabeli
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) {
+            return;
+        }
+        Instant now = Instant.now();
+        List<Claimed> claimed;
+        try {
+            claimed = jdbcTemplate.query(CLAIM, (rs, rowNum) -> new Claimed(
+                    rs.getLong("id"), rs.getString("recipient"), rs.getString("subject"),
+                    rs.getString("html_body"), rs.getInt("attempts")),
+                Timestamp.from(now.plusMillis(leaseMillis)), Timestamp.from(now), Math.min(batchSize, capacity));
+        } catch (Exception e) {
+            System.err.println("Email outbox: preuzimanje poruka nije uspelo: " + e.getMessage());
+            return;
+        }
+        for (Claimed message : claimed) {
+            try {
+                executor.execute(() -> deliver(message));
+            } catch (RejectedExecutionException e) {
+                // Poruka ostaje pod lease-om i biće ponovo preuzeta kada istekne
+                break;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mail.outbox.smtp-idle-timeout-millis:60000}")
+    public void closeIdleConnections() {
+        if (transportPool != null) {
+            transportPool.closeIdle();
+        }
+    }
+
+    @Scheduled(cron = "${app.mail.outbox.cleanup-cron:0 30 3 * * *}")
+    public void deleteOldSent() {
+        int deleted = jdbcTemplate.update(DELETE_SENT, Timestamp.from(Instant.now().minus(Duration.ofDays(retentionDays))));
+        if (deleted > 0) {
+            System.out.println("Email outbox: obrisano " + deleted + " poslatih poruka");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Long> byStatus = new HashMap<>();
+        for (Object[] row : outboxRepository.countByStatus()) {
+            byStatus.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        stats.put("byStatus", byStatus);
+        stats.put("mailConfigured", mailSender != null);
+        stats.put("workers", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("sent", sent.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (transportPool != null) {
+            transportPool.closeAll();
+        }
+    }
+
+    private void deliver(Claimed message) {
+        try {
+            MimeMessage mime = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(mime, true, "UTF-8");
+            helper.setFrom(fromEmail, fromName);
+            helper.setTo(message.recipient);
+            helper.setSubject(message.subject);
+            helper.setText(message.htmlBody, true);
+            if (transportPool != null) {
+                transportPool.send(mime);
+            } else {
+                mailSender.send(mime);
+            }
+            jdbcTemplate.update(MARK_SENT, Timestamp.from(Instant.now()), message.id);
+            sent.increment();
+            System.out.println("Email sent successfully to: " + message.recipient);
+        } catch (Exception e) {
+            String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            if (error.length() > 1000) {
+                error = error.substring(0, 1000);
+            }
+            try {
+                if (message.attempts >= maxAttempts) {
+                    jdbcTemplate.update(MARK_FAILED, error, message.id);
+                    failed.increment();
+                    System.err.println("Email za " + message.recipient + " nije poslat posle " + message.attempts + " pokušaja: " + error);
+                } else {
+                    long delay = Math.min(backoffMaxMillis, backoffBaseMillis << Math.min(20, message.attempts - 1));
+                    jdbcTemplate.update(MARK_RETRY, Timestamp.from(Instant.now().plusMillis(delay)), error, message.id);
+                    retried.increment();
+                    System.err.println("Email za " + message.recipient + " nije poslat (pokušaj " + message.attempts
+                        + "), novi pokušaj za " + (delay / 1000) + "s: " + error);
+                }
+            } catch (Exception dbError) {
+                // Lease će isteći i poruka će biti ponovo preuzeta
+                System.err.println("Email outbox: status poruke " + message.id + " nije upisan: " + dbError.getMessage());
+            }
+        }
+    }
+
+    private static final class Claimed {
+        final long id;
+        final String recipient;
+        final String subject;
+        final String htmlBody;
+        final int attempts;
+
+        Claimed(long id, String recipient, String subject, String htmlBody, int attempts) {
+            this.id = id;
+            this.recipient = recipient;
+            this.subject = subject;
+            this.htmlBody = htmlBody;
+            this.attempts = attempts;
+        }
+    }
+}
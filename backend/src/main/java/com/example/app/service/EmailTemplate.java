@@ -0,0 +1,89 @@
+package com.example.app.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nepromenljiv, jednom parsiran HTML šablon za email: {@code {{ime}}} ubacuje HTML-escape-ovanu vrednost.
+ *
+ * Vrednosti poznate pri učitavanju (naslov, adresa aplikacije) ugrađuju se odmah u tekst, pa zaglavlje
+ * i podnožje ostaju jedan gotov String. Šablon je niz tekstova i imena promenljivih koji se smenjuju:
+ * {@code texts[0] names[0] texts[1] ... names[n-1] texts[n]}; renderovanje samo nadovezuje u bafer.
+ */
+final class EmailTemplate {
+
+    private final String[] texts;
+    private final String[] names;
+
+    private EmailTemplate(String[] texts, String[] names) {
+        this.texts = texts;
+        this.names = names;
+    }
+
+    static EmailTemplate compile(String source, Map<String, String> constants) {
+        List<String> texts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        int position = 0;
+        while (position < source.length()) {
+            int start = source.indexOf("{{", position);
+            if (start < 0) {
+                text.append(source, position, source.length());
+                break;
+            }
+            text.append(source, position, start);
+            int end = source.indexOf("}}", start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Nezatvoren tag na poziciji " + start);
+            }
+            String name = source.substring(start + 2, end).trim();
+            if (name.isEmpty() || name.contains("{") || name.startsWith("#") || name.startsWith("/")) {
+                throw new IllegalArgumentException("Neispravan tag {{" + name + "}} na poziciji " + start);
+            }
+            String constant = constants.get(name);
+            if (constant != null) {
+                // Konstanta se spaja sa okolnim tekstom u jedan segment
+                escapeTo(constant, text);
+            } else {
+                texts.add(text.toString());
+                names.add(name);
+                text.setLength(0);
+            }
+            position = end + 2;
+        }
+        texts.add(text.toString());
+        return new EmailTemplate(texts.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    void render(Map<String, String> values, StringBuilder out) {
+        out.append(texts[0]);
+        for (int i = 0; i < names.length; i++) {
+            String value = values.get(names[i]);
+            if (value != null) {
+                escapeTo(value, out);
+            }
+            out.append(texts[i + 1]);
+        }
+    }
+
+    static void escapeTo(String value, StringBuilder out) {
+        int last = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&' -> replacement = "&amp;";
+                case '<' -> replacement = "&lt;";
+                case '>' -> replacement = "&gt;";
+                case '"' -> replacement = "&quot;";
+                case '\'' -> replacement = "&#39;";
+                default -> {
+                    continue;
+                }
+            }
+            out.append(value, last, i).append(replacement);
+            last = i + 1;
+        }
+        out.append(value, last, value.length());
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.app.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Email šabloni po jeziku, učitani i kompajlirani jednom pri startu.
+ *
+ * Za svaki jezik iz {@code app.mail.templates.locales} čita se {@code email/layout_<jezik>.html}
+ * i po jedan fajl za svaku poruku ({@code email/<poruka>_<jezik>.html}). Fajl poruke počinje
+ * zaglavljem {@code subject:} / {@code title:} završenim linijom {@code ---}; telo se umeće u layout
+ * na mesto {@code {{{body}}}}, pa se ceo email kompajlira u jedan {@link EmailTemplate}.
+ * Nepodržan jezik koristi prvi iz liste.
+ */
+@Component
+public class EmailTemplates {
+
+    public static final String PASSWORD_RESET = "password-reset";
+    public static final String WELCOME = "welcome";
+
+    private static final List<String> MESSAGES = List.of(PASSWORD_RESET, WELCOME);
+    private static final String BODY_SLOT = "{{{body}}}";
+    // Veći baferi se ne zadržavaju po niti, da jedna velika poruka ne drži memoriju
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final String defaultLocale;
+    private final Map<String, Compiled> templates = new HashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    public EmailTemplates(ResourceLoader resourceLoader,
+                          @Value("${app.mail.templates.location:classpath:email/}") String location,
+                          @Value("${app.mail.templates.locales:sr,en}") String locales,
+                          @Value("${app.frontend.url:https://app.biozen.rs}") String frontendUrl) {
+        Set<String> languages = new LinkedHashSet<>();
+        for (String locale : locales.split(",")) {
+            if (!locale.isBlank()) {
+                languages.add(locale.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        if (languages.isEmpty()) {
+            throw new IllegalStateException("app.mail.templates.locales ne sme biti prazan");
+        }
+        this.defaultLocale = languages.iterator().next();
+
+        for (String language : languages) {
+            String layout = read(resourceLoader, location + "layout_" + language + ".html");
+            if (!layout.contains(BODY_SLOT)) {
+                throw new IllegalStateException("Layout za jezik " + language + " nema " + BODY_SLOT);
+            }
+            for (String message : MESSAGES) {
+                String resourceName = location + message + "_" + language + ".html";
+                String source = read(resourceLoader, resourceName);
+                Map<String, String> header = new HashMap<>();
+                String body = parseHeader(source, header, resourceName);
+                String subject = header.get("subject");
+                if (subject == null) {
+                    throw new IllegalStateException("Šablon " + resourceName + " nema subject");
+                }
+
+                Map<String, String> constants = new HashMap<>();
+                constants.put("frontendUrl", frontendUrl);
+                constants.put("title", header.getOrDefault("title", subject));
+                try {
+                    EmailTemplate template = EmailTemplate.compile(layout.replace(BODY_SLOT, body), constants);
+                    templates.put(key(message, language), new Compiled(subject, template));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Neispravan šablon " + resourceName + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        System.out.println("Email šabloni učitani: " + MESSAGES.size() + " poruka, jezici " + languages);
+    }
+
+    public RenderedEmail render(String message, Locale locale, Map<String, String> values) {
+        Compiled compiled = lookup(message, locale);
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        compiled.template.render(values, out);
+        String html = out.toString();
+        release(out);
+        return new RenderedEmail(compiled.subject, html);
+    }
+
+    /**
+     * Renderuje istu poruku za mnogo primalaca (kampanje) kroz jedan bafer.
+     * {@code consumer} dobija redni broj primaoca i gotov HTML.
+     */
+    public void renderBulk(String message, Locale locale, List<Map<String, String>> recipients,
+                           BiConsumer<Integer, String> consumer) {
+        Compiled compiled = lookup(message, locale);
+        StringBuilder out = buffers.get();
+        for (int i = 0; i < recipients.size(); i++) {
+            out.setLength(0);
+            compiled.template.render(recipients.get(i), out);
+            consumer.accept(i, out.toString());
+        }
+        release(out);
+    }
+
+    public String subject(String message, Locale locale) {
+        return lookup(message, locale).subject;
+    }
+
+    public String resolveLocale(Locale locale) {
+        if (locale != null && templates.containsKey(key(MESSAGES.get(0), locale.getLanguage()))) {
+            return locale.getLanguage();
+        }
+        return defaultLocale;
+    }
+
+    private Compiled lookup(String message, Locale locale) {
+        Compiled compiled = templates.get(key(message, resolveLocale(locale)));
+        if (compiled == null) {
+            throw new IllegalArgumentException("Nepoznat email šablon: " + message);
+        }
+        return compiled;
+    }
+
+    private void release(StringBuilder out) {
+        if (out.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+    }
+
+    private static String key(String message, String language) {
+        return message + "_" + language;
+    }
+
+    // Čita "ključ: vrednost" linije do "---" i vraća ostatak (telo poruke)
+    private static String parseHeader(String source, Map<String, String> header, String resourceName) {
+        int position = 0;
+        while (position < source.length()) {
+            int end = source.indexOf('\n', position);
+            if (end < 0) {
+                break;
+            }
+            String line = source.substring(position, end).trim();
+            position = end + 1;
+            if (line.equals("---")) {
+                return source.substring(position);
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                header.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        throw new IllegalStateException("Šablon " + resourceName + " nema zaglavlje završeno sa ---");
+    }
+
+    private static String read(ResourceLoader resourceLoader, String location) {
+        Resource resource = resourceLoader.getResource(location);
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Ne mogu da učitam email šablon: " + location, e);
+        }
+    }
+
+    public static final class RenderedEmail {
+        private final String subject;
+        private final String html;
+
+        RenderedEmail(String subject, String html) {
+            this.subject = subject;
+            this.html = html;
+        }
+
+        public String getSubject() { return subject; }
+        public String getHtml() { return html; }
+    }
+
+    private static final class Compiled {
+        final String subject;
+        final EmailTemplate template;
+
+        Compiled(String subject, EmailTemplate template) {
+            this.subject = subject;
+            this.template = template;
+        }
+    }
+}
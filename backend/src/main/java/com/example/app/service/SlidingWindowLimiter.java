@@ -0,0 +1,102 @@
+package com.example.app.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory sliding-window limiter po ključu (korisnik, IP adresa, email...).
+ *
+ * Svaki ključ ima prsten od {@code maxEvents} vremenskih oznaka. Događaj prolazi samo
+ * ako je najstarija oznaka u prstenu izašla iz prozora; tada se ona CAS-om zamenjuje novom.
+ * Nema lock-ova na hot path-u, a ConcurrentHashMap je sam po sebi stripovan po bucket-ima.
+ */
+public final class SlidingWindowLimiter<K> {
+
+    private final int maxEvents;
+    private final long windowNanos;
+    private final ConcurrentHashMap<K, Window> windows = new ConcurrentHashMap<>();
+
+    public SlidingWindowLimiter(int maxEvents, long windowSeconds) {
+        this.maxEvents = Math.max(1, maxEvents);
+        this.windowNanos = windowSeconds * 1_000_000_000L;
+    }
+
+    /**
+     * Pokušava da zauzme jedno mesto u prozoru za ključ.
+     *
+     * @return 0 ako je događaj dozvoljen, inače broj sekundi do oslobađanja sledećeg mesta
+     */
+    public long tryAcquire(K key) {
+        Window window = windows.computeIfAbsent(key, k -> new Window(maxEvents));
+        return window.tryAcquire(System.nanoTime(), windowNanos);
+    }
+
+    /**
+     * Kao {@link #tryAcquire}, ali bez zauzimanja mesta.
+     */
+    public long retryAfter(K key) {
+        Window window = windows.get(key);
+        return window == null ? 0 : window.retryAfter(System.nanoTime(), windowNanos);
+    }
+
+    public void reset(K key) {
+        windows.remove(key);
+    }
+
+    // Uklanja ključeve čiji je poslednji događaj stariji od prozora
+    public void evictIdle() {
+        long now = System.nanoTime();
+        windows.entrySet().removeIf(entry -> entry.getValue().isIdle(now, windowNanos));
+    }
+
+    public int size() {
+        return windows.size();
+    }
+
+    private static final class Window {
+        private final AtomicLongArray stamps;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private volatile long lastAcquired;
+
+        Window(int capacity) {
+            this.stamps = new AtomicLongArray(capacity);
+        }
+
+        long tryAcquire(long now, long windowNanos) {
+            int capacity = stamps.length();
+            for (;;) {
+                int position = cursor.get();
+                int slot = Math.floorMod(position, capacity);
+                long oldest = stamps.get(slot);
+                // 0 znači da slot još nije korišćen
+                if (oldest != 0 && now - oldest < windowNanos) {
+                    return secondsUntilFree(now, oldest, windowNanos);
+                }
+                if (cursor.compareAndSet(position, position + 1)) {
+                    // nanoTime može biti 0 ili negativan; 0 je rezervisan za prazan slot
+                    stamps.set(slot, now == 0 ? 1 : now);
+                    lastAcquired = now;
+                    return 0;
+                }
+            }
+        }
+
+        long retryAfter(long now, long windowNanos) {
+            long oldest = stamps.get(Math.floorMod(cursor.get(), stamps.length()));
+            if (oldest != 0 && now - oldest < windowNanos) {
+                return secondsUntilFree(now, oldest, windowNanos);
+            }
+            return 0;
+        }
+
+        boolean isIdle(long now, long windowNanos) {
+            return lastAcquired != 0 && now - lastAcquired >= windowNanos;
+        }
+
+        private static long secondsUntilFree(long now, long oldest, long windowNanos) {
+            long waitNanos = windowNanos - (now - oldest);
+            return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.app.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Mali pool otvorenih SMTP konekcija (već prošle STARTTLS i AUTH), da svaka poruka
+ * ne plaća novo povezivanje. Konekcija se pozajmljuje ekskluzivno, a posle greške se zatvara.
+ * Konekcije neaktivne duže od {@code idleTimeoutMillis} zatvara {@link #closeIdle()}.
+ */
+final class SmtpTransportPool {
+
+    private final JavaMailSenderImpl sender;
+    private final BlockingQueue<PooledTransport> idle;
+    private final long idleTimeoutMillis;
+
+    SmtpTransportPool(JavaMailSenderImpl sender, int maxIdle, long idleTimeoutMillis) {
+        this.sender = sender;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    void send(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        message.saveChanges();
+
+        PooledTransport pooled = borrow();
+        try {
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+        } catch (MessagingException | RuntimeException e) {
+            close(pooled);
+            throw e;
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        if (!idle.offer(pooled)) {
+            close(pooled);
+        }
+    }
+
+    void closeIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledTransport pooled : idle) {
+            if (now - pooled.lastUsed >= idleTimeoutMillis && idle.remove(pooled)) {
+                close(pooled);
+            }
+        }
+    }
+
+    void closeAll() {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            close(pooled);
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            // Server je mogao da zatvori konekciju; isConnected() šalje NOOP
+            if (System.currentTimeMillis() - pooled.lastUsed < idleTimeoutMillis && pooled.transport.isConnected()) {
+                return pooled;
+            }
+            close(pooled);
+        }
+        Transport transport = sender.getSession().getTransport(sender.getProtocol() != null ? sender.getProtocol() : "smtp");
+        transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+        return new PooledTransport(transport);
+    }
+
+    private static void close(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            // konekcija je ionako neupotrebljiva
+        }
+    }
+
+    private static final class PooledTransport {
+        final Transport transport;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.app.user;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evidencija prijava (lastLoginAt, loginCount) bez upisa u tabelu users na svaku prijavu.
+ *
+ * Prijava samo uvećava brojač u memoriji; zakazani flush upisuje sve razlike jednim batch-em
+ * relativnih UPDATE-a ({@code login_count = login_count + x}), pa istovremene prijave ne gube
+ * izmene. Admin pregled dodaje neupisane razlike preko {@link #applyPending(User)}.
+ */
+@Component
+public class LoginActivityRecorder {
+
+    private static final String UPDATE =
+        "UPDATE users SET login_count = COALESCE(login_count, 0) + ?, " +
+        "last_login_at = GREATEST(last_login_at, ?) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Menja se samo unutar compute/computeIfPresent (zaključan bucket), pa se uvećanja ne gube
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    public LoginActivityRecorder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Samo memorija - bez pristupa bazi
+    public void record(Long userId) {
+        long now = System.currentTimeMillis();
+        pending.compute(userId, (id, entry) -> {
+            Pending result = entry != null ? entry : new Pending();
+            result.add(1, now);
+            return result;
+        });
+    }
+
+    /**
+     * Dodaje neupisane prijave na entitet učitan za prikaz. Entitet posle toga ne sme da se čuva.
+     */
+    public User applyPending(User user) {
+        Pending entry = pending.get(user.getId());
+        if (entry == null) {
+            return user;
+        }
+        int stored = user.getLoginCount() != null ? user.getLoginCount() : 0;
+        user.setLoginCount(stored + entry.count);
+        Instant last = Instant.ofEpochMilli(entry.lastLoginAt);
+        if (user.getLastLoginAt() == null || user.getLastLoginAt().isBefore(last)) {
+            user.setLastLoginAt(last);
+        }
+        return user;
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.login-activity.flush-interval-millis:10000}")
+    public synchronized void flush() {
+        List<Long> userIds = new ArrayList<>();
+        List<Pending> drained = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            Pending[] taken = new Pending[1];
+            // Uklanja i preuzima razliku atomski u odnosu na record()
+            pending.computeIfPresent(userId, (id, entry) -> {
+                taken[0] = entry;
+                return null;
+            });
+            if (taken[0] != null) {
+                userIds.add(userId);
+                drained.add(taken[0]);
+            }
+        }
+        if (userIds.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            Pending entry = drained.get(i);
+            rows.add(new Object[] { entry.count, new Timestamp(entry.lastLoginAt), userIds.get(i) });
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE, rows);
+        } catch (Exception e) {
+            // Vrati razlike u memoriju za sledeći flush
+            System.err.println("Flush prijava nije uspeo (" + rows.size() + " korisnika): " + e.getMessage());
+            for (int i = 0; i < userIds.size(); i++) {
+                Pending entry = drained.get(i);
+                pending.compute(userIds.get(i), (id, current) -> {
+                    Pending result = current != null ? current : new Pending();
+                    result.add(entry.count, entry.lastLoginAt);
+                    return result;
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static final class Pending {
+        volatile int count;
+        volatile long lastLoginAt;
+
+        void add(int logins, long at) {
+            count += logins;
+            lastLoginAt = Math.max(lastLoginAt, at);
+        }
+    }
+}
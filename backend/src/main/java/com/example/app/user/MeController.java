@@ -1,7 +1,6 @@
 package com.example.app.user;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -13,34 +12,31 @@ import java.util.Optional;
 public class MeController {
 
     private final UserRepository userRepository;
+    private final UserStatusCache userStatusCache;
 
-    public MeController(UserRepository userRepository) {
+    public MeController(UserRepository userRepository, UserStatusCache userStatusCache) {
         this.userRepository = userRepository;
+        this.userStatusCache = userStatusCache;
     }
 
     @GetMapping
-    public ResponseEntity<Map<String, Object>> me(Authentication auth) {
-        if (auth == null || !auth.isAuthenticated()) {
-            return ResponseEntity.ok(Map.of(
+    public ResponseEntity<Map<String, Object>> me(UserPrincipal principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).body(Map.of(
                     "authenticated", false,
-                    "email", null
+                    "message", "Niste autentifikovani"
             ));
         }
 
-        // Principal is now user ID (not email) for security
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of(
+        // Status iz keša - deaktiviran nalog se odbija bez čitanja tabele users
+        if (!principal.isActive()) {
+            return ResponseEntity.status(403).body(Map.of(
                     "authenticated", false,
-                    "message", "Neispravan token"
+                    "message", "Korisnički nalog je deaktiviran"
             ));
         }
 
-        Optional<User> userOpt = userRepository.findById(userId);
-
+        Optional<User> userOpt = userRepository.findById(principal.getUserId());
         if (userOpt.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of(
                     "authenticated", false,
@@ -49,14 +45,6 @@ public class MeController {
         }
 
         User user = userOpt.get();
-        
-        // Check if user is active
-        if (user.getIsActive() == null || !user.getIsActive()) {
-            return ResponseEntity.status(403).body(Map.of(
-                    "authenticated", false,
-                    "message", "Korisnički nalog je deaktiviran"
-            ));
-        }
 
         Map<String, Object> response = new HashMap<>();
         response.put("authenticated", true);
@@ -75,33 +63,23 @@ public class MeController {
     }
 
     @PutMapping
-    public ResponseEntity<?> updateMe(Authentication auth, @RequestBody UpdateUserRequest request) {
-        if (auth == null || !auth.isAuthenticated()) {
+    public ResponseEntity<?> updateMe(UserPrincipal principal, @RequestBody UpdateUserRequest request) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("message", "Niste autentifikovani"));
         }
 
-        // Principal is now user ID (not email) for security
-        String userIdStr = String.valueOf(auth.getPrincipal());
-        Long userId;
-        try {
-            userId = Long.parseLong(userIdStr);
-        } catch (NumberFormatException e) {
-            return ResponseEntity.status(401).body(Map.of("message", "Neispravan token"));
+        if (!principal.isActive()) {
+            return ResponseEntity.status(403).body(Map.of("message", "Korisnički nalog je deaktiviran"));
         }
 
-        Optional<User> userOpt = userRepository.findById(userId);
+        Optional<User> userOpt = userRepository.findById(principal.getUserId());
 
         if (userOpt.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("message", "Korisnik nije pronađen"));
         }
 
         User user = userOpt.get();
-        
-        // Check if user is active
-        if (user.getIsActive() == null || !user.getIsActive()) {
-            return ResponseEntity.status(403).body(Map.of("message", "Korisnički nalog je deaktiviran"));
-        }
-        
+
         if (request.ime != null) user.setIme(request.ime);
         if (request.prezime != null) user.setPrezime(request.prezime);
         if (request.pol != null) user.setPol(request.pol);
@@ -111,6 +89,7 @@ public class MeController {
         if (request.obimStruka != null) user.setObimStruka(request.obimStruka);
 
         userRepository.save(user);
+        userStatusCache.invalidate(user.getId());
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Podaci su ažurirani");
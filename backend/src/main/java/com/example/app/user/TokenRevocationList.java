@@ -0,0 +1,70 @@
+package com.example.app.user;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista opoziva JWT tokena u memoriji: za svakog korisnika čiji su tokeni ikada opozvani
+ * čuva najmanju važeću verziju ({@code users.token_version}). Filter odbija token čija je
+ * verzija manja, bez pristupa bazi.
+ *
+ * Učitava se pri startu i periodično (zbog izmena sa drugih instanci); verzije samo rastu,
+ * pa se vrednosti spajaju uzimanjem veće.
+ */
+@Component
+public class TokenRevocationList {
+
+    private final UserRepository userRepository;
+    private final UserStatusCache userStatusCache;
+
+    private final ConcurrentHashMap<Long, Integer> minVersions = new ConcurrentHashMap<>();
+
+    public TokenRevocationList(UserRepository userRepository, UserStatusCache userStatusCache) {
+        this.userRepository = userRepository;
+        this.userStatusCache = userStatusCache;
+    }
+
+    public boolean isRevoked(Long userId, int tokenVersion) {
+        Integer minVersion = minVersions.get(userId);
+        return minVersion != null && tokenVersion < minVersion;
+    }
+
+    /**
+     * Opoziva sve postojeće tokene korisnika povećanjem verzije i čuva korisnika
+     * (zajedno sa ostalim izmenama koje je pozivalac napravio na entitetu).
+     */
+    public User revokeAll(User user) {
+        int next = versionOf(user) + 1;
+        user.setTokenVersion(next);
+        User saved = userRepository.save(user);
+        minVersions.merge(saved.getId(), next, Math::max);
+        userStatusCache.invalidate(saved.getId());
+        return saved;
+    }
+
+    public static int versionOf(User user) {
+        // Redovi nastali pre kolone token_version imaju null
+        return user.getTokenVersion() != null ? user.getTokenVersion() : 0;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.reload-interval-millis:30000}",
+               initialDelayString = "${app.jwt.revocation.reload-interval-millis:30000}")
+    public void reload() {
+        try {
+            for (Object[] row : userRepository.findTokenVersions()) {
+                minVersions.merge((Long) row[0], ((Number) row[1]).intValue(), Math::max);
+            }
+        } catch (Exception e) {
+            // Access tokeni su kratkog veka, a refresh uvek proverava bazu
+            System.err.println("Lista opoziva tokena nije učitana: " + e.getMessage());
+        }
+    }
+
+    public int size() {
+        return minVersions.size();
+    }
+}
@@ -3,8 +3,11 @@ package com.example.app.user;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.Instant;
 
+// UPDATE sadrži samo izmenjene kolone, da čuvanje profila ne pregazi login_count upisan u međuvremenu
+@DynamicUpdate
 @Entity
 @Table(name = "users", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
 public class User {
@@ -42,6 +45,9 @@ public class User {
     private Integer loginCount = 0;
     private Boolean isActive = true;
 
+    // Tokeni sa manjom verzijom su opozvani (deaktivacija, promena uloge, reset lozinke)
+    private Integer tokenVersion = 0;
+
     public Long getId() { return id; }
     public String getEmail() { return email; }
     public String getPasswordHash() { return passwordHash; }
@@ -76,4 +82,6 @@ public class User {
     public void setLoginCount(Integer loginCount) { this.loginCount = loginCount; }
     public Boolean getIsActive() { return isActive; }
     public void setIsActive(Boolean isActive) { this.isActive = isActive; }
+    public Integer getTokenVersion() { return tokenVersion; }
+    public void setTokenVersion(Integer tokenVersion) { this.tokenVersion = tokenVersion; }
 }
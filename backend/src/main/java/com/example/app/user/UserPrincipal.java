@@ -0,0 +1,32 @@
+package com.example.app.user;
+
+/**
+ * Razrešen korisnik iz JWT-a: samo ono što je kontrolerima potrebno za proveru pristupa
+ * (status i uloga), bez učitavanja celog {@link User} entiteta.
+ *
+ * Kontroler ga dobija kao argument metode; {@code null} znači da zahtev nema validnog korisnika.
+ */
+public final class UserPrincipal {
+
+    private final Long userId;
+    private final boolean active;
+    private final String role;
+    // Verzija tokena (users.token_version) sa kojom je korisnik razrešen
+    private final int version;
+
+    UserPrincipal(Long userId, boolean active, String role, int version) {
+        this.userId = userId;
+        this.active = active;
+        this.role = role != null ? role : "USER";
+        this.version = version;
+    }
+
+    public Long getUserId() { return userId; }
+    public boolean isActive() { return active; }
+    public String getRole() { return role; }
+    public int getVersion() { return version; }
+
+    public boolean isAdmin() {
+        return active && "ADMIN".equalsIgnoreCase(role);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.app.user;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Ubacuje {@link UserPrincipal} u metode kontrolera koje ga traže kao argument.
+ * Vrednost je null ako korisnik nije razrešen; proveru statusa radi sam kontroler.
+ */
+public class UserPrincipalArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final UserStatusCache userStatusCache;
+
+    public UserPrincipalArgumentResolver(UserStatusCache userStatusCache) {
+        this.userStatusCache = userStatusCache;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return UserPrincipal.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        return userStatusCache.resolve(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
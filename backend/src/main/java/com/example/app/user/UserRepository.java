@@ -1,13 +1,24 @@
 package com.example.app.user;
 
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
     Optional<User> findByPasswordResetToken(String token);
     Page<User> findByEmailContainingIgnoreCase(String email, Pageable pageable);
+
+    // Samo kolone potrebne za proveru pristupa: [isActive, role, tokenVersion]
+    @Query("SELECT u.isActive, u.role, u.tokenVersion FROM User u WHERE u.id = :id")
+    List<Object[]> findStatusById(@Param("id") Long id);
+
+    // Korisnici sa opozvanim tokenima: [id, tokenVersion]
+    @Query("SELECT u.id, u.tokenVersion FROM User u WHERE u.tokenVersion > 0")
+    List<Object[]> findTokenVersions();
 }
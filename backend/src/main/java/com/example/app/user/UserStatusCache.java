@@ -0,0 +1,127 @@
+package com.example.app.user;
+
+import com.example.app.config.JwtService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Razrešava korisnika iz zahteva u {@link UserPrincipal}.
+ *
+ * Token sa verzijom ({@code ver} claim) je u {@link com.example.app.config.JwtAuthFilter} već proveren
+ * protiv {@link TokenRevocationList}, pa je korisnik aktivan sa ulogom iz tokena - bez pristupa bazi.
+ * Samo stariji tokeni bez verzije idu kroz keš statusa (aktivan, uloga) po userId.
+ *
+ * Svaka izmena statusa, uloge ili profila kroz aplikaciju mora da pozove {@link #invalidate(Long)};
+ * TTL pokriva samo izmene mimo aplikacije (npr. direktno u bazi ili na drugoj instanci).
+ */
+@Component
+public class UserStatusCache {
+
+    private final UserRepository userRepository;
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Verzija poslednje invalidacije; učitavanje koje je počelo pre nje se ne kešira
+    private final AtomicLong lastInvalidation = new AtomicLong();
+
+    public UserStatusCache(UserRepository userRepository,
+                           @Value("${app.user.status-cache.max-entries:10000}") int maxEntries,
+                           @Value("${app.user.status-cache.ttl-millis:60000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = Math.max(0, ttlMillis);
+    }
+
+    /**
+     * @return korisnik iz tokena, ili null ako zahtev nije autentifikovan, subject nije
+     *         ispravan userId ili korisnik više ne postoji
+     */
+    public UserPrincipal resolve(Authentication auth) {
+        if (auth == null || !auth.isAuthenticated() || auth.getPrincipal() == null) {
+            return null;
+        }
+        Long userId;
+        try {
+            userId = Long.parseLong(String.valueOf(auth.getPrincipal()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (auth.getDetails() instanceof JwtService.VerifiedToken token && token.getTokenVersion() != null) {
+            return new UserPrincipal(userId, true, token.getRole(), token.getTokenVersion());
+        }
+        return resolve(userId);
+    }
+
+    public UserPrincipal resolve(Long userId) {
+        long now = System.currentTimeMillis();
+        Entry cached = entries.get(userId);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.principal;
+            }
+            entries.remove(userId, cached);
+        }
+
+        long sequenceNumber = sequence.incrementAndGet();
+        List<Object[]> rows = userRepository.findStatusById(userId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        int tokenVersion = row[2] != null ? ((Number) row[2]).intValue() : 0;
+        UserPrincipal principal = new UserPrincipal(userId, Boolean.TRUE.equals(row[0]), (String) row[1], tokenVersion);
+
+        if (maxEntries > 0 && ttlMillis > 0) {
+            if (entries.size() >= maxEntries) {
+                evictExpired();
+                if (entries.size() >= maxEntries) {
+                    entries.clear();
+                }
+            }
+            Entry entry = new Entry(principal, sequenceNumber, now + ttlMillis);
+            entries.merge(userId, entry, (existing, loaded) ->
+                existing.sequence > loaded.sequence ? existing : loaded);
+            // Invalidacija tokom učitavanja: pročitani status je možda već zastareo
+            if (lastInvalidation.get() > sequenceNumber) {
+                entries.remove(userId, entry);
+            }
+        }
+        return principal;
+    }
+
+    // Poziva se posle svake izmene korisnika (aktivacija, deaktivacija, uloga, profil, brisanje)
+    public void invalidate(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        lastInvalidation.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+        entries.remove(userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.user.status-cache.sweep-interval-millis:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+    }
+
+    private static final class Entry {
+        final UserPrincipal principal;
+        // Redni broj učitavanja; novije učitavanje uvek ima veći broj
+        final long sequence;
+        final long expiresAt;
+
+        Entry(UserPrincipal principal, long sequence, long expiresAt) {
+            this.principal = principal;
+            this.sequence = sequence;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.app.chat;
+
+import com.example.app.config.JwtService;
+import com.example.app.user.User;
+import com.example.app.user.UserRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Dok čeka OpenAI, /api/chat ne sme da drži konekciju iz pool-a: šest istovremenih sporih poziva
+ * mora da prođe kroz pool od dve konekcije, a aktivnih konekcija za to vreme nema.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "spring.main.allow-bean-definition-overriding=true",
+    "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.show-sql=false",
+    "logging.level.org.hibernate.SQL=INFO",
+    "OPENAI_API_KEY=test-key",
+    "app.openai.latency.hedge-enabled=false",
+    "app.chat.cache.enabled=false",
+    // Periodični poslovi se izvrše jednom pri startu, pa ne uzimaju konekcije tokom merenja
+    "app.mail.outbox.poll-interval-millis=3600000",
+    "app.auth.login-activity.flush-interval-millis=3600000",
+    "app.jwt.revocation.reload-interval-millis=3600000",
+    "app.blog.search.sync-interval-millis=3600000",
+    "app.blog.views.flush-interval-millis=3600000",
+    "app.blog.version.reload-interval-millis=3600000",
+    "app.chat.prompt.reload-interval-millis=3600000",
+    "app.chat.usage.flush-interval-millis=3600000"
+})
+class ChatConnectionHoldTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int CONCURRENT_CHATS = 6;
+    private static final long OPENAI_DELAY_MILLIS = 1500;
+
+    private static final OpenAIStubServer STUB = startStub();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @DynamicPropertySource
+    static void openAIProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.openai.base-url", STUB::baseUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    @Test
+    void connectionIsNotHeldWhileOpenAIIsSlow() throws Exception {
+        HttpClient http = HttpClient.newHttpClient();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_CHATS; i++) {
+            String token = tokenFor(newUser(i));
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/chat"))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"message\":\"Pitanje broj " + i + "\"}"))
+                .build();
+            responses.add(http.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        // Sa konekcijom zadržanom tokom poziva, pool od dve konekcije pustio bi najviše dva poziva
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (STUB.inFlight() < CONCURRENT_CHATS && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(CONCURRENT_CHATS, STUB.inFlight(), "svi pozivi ka OpenAI treba da budu istovremeno u toku");
+
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+        int peakActive = 0;
+        for (int i = 0; i < 20 && STUB.inFlight() == CONCURRENT_CHATS; i++) {
+            peakActive = Math.max(peakActive, hikari.getHikariPoolMXBean().getActiveConnections());
+            Thread.sleep(20);
+        }
+        assertEquals(0, peakActive, "aktivne konekcije dok se čeka OpenAI");
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            HttpResponse<String> result = response.join();
+            assertEquals(200, result.statusCode(), result.body());
+            assertTrue(result.body().contains("odgovor"), result.body());
+        }
+    }
+
+    private User newUser(int index) {
+        User user = new User();
+        user.setEmail("korisnik" + index + "@example.com");
+        user.setPasswordHash("x");
+        return userRepository.save(user);
+    }
+
+    private String tokenFor(User user) {
+        return jwtService.generateAccessToken(String.valueOf(user.getId()), Map.of("role", "USER", "ver", 0));
+    }
+
+    private static OpenAIStubServer startStub() {
+        try {
+            return new OpenAIStubServer(request -> OpenAIStubServer.Response.ok("odgovor", OPENAI_DELAY_MILLIS));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @TestConfiguration
+    static class H2DataSource {
+
+        // Zamenjuje DatabaseConfig (PostgreSQL iz promenljivih okruženja) bazom u memoriji
+        @Bean
+        @Primary
+        DataSource dataSource() {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setJdbcUrl("jdbc:h2:mem:chat-connection-hold;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            dataSource.setUsername("sa");
+            dataSource.setPassword("");
+            dataSource.setMaximumPoolSize(POOL_SIZE);
+            dataSource.setMinimumIdle(POOL_SIZE);
+            dataSource.setConnectionTimeout(5000);
+            return dataSource;
+        }
+    }
+}
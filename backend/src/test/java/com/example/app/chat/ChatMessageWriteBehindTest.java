@@ -0,0 +1,148 @@
+package com.example.app.chat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatMessageWriteBehindTest {
+
+    private final FakeJdbc jdbc = new FakeJdbc();
+    private ChatMessageWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() {
+        if (writeBehind != null) {
+            jdbc.failWith = null;
+            jdbc.transientFailures.set(0);
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    void transientErrorsAreRetriedUntilTheDatabaseIsBack() throws Exception {
+        jdbc.transientFailures.set(6);
+        writeBehind = start();
+
+        for (int i = 0; i < 3; i++) {
+            writeBehind.enqueue(new ChatMessage(1L, "user", "poruka " + i));
+        }
+
+        awaitWritten(3);
+        assertEquals(0L, writeBehind.stats().get("dropped"));
+        assertTrue(writeBehind.pendingFor(1L).isEmpty());
+    }
+
+    @Test
+    void onlyTheRowRejectedByTheDatabaseIsDropped() throws Exception {
+        jdbc.failWith = rows -> rows.stream().anyMatch(message -> message.getMessage().equals("loša"));
+        writeBehind = start();
+
+        writeBehind.enqueue(new ChatMessage(1L, "user", "prva"));
+        writeBehind.enqueue(new ChatMessage(1L, "user", "loša"));
+        writeBehind.enqueue(new ChatMessage(1L, "user", "treća"));
+
+        awaitWritten(2);
+        assertEquals(List.of("prva", "treća"), jdbc.writtenMessages());
+        awaitDropped(1);
+        assertTrue(writeBehind.pendingFor(1L).isEmpty());
+    }
+
+    @Test
+    void batchFailingAtShutdownIsWrittenByShutdown() throws Exception {
+        jdbc.flusherCutOff = true;
+        writeBehind = start();
+
+        writeBehind.enqueue(new ChatMessage(1L, "user", "prva"));
+        writeBehind.enqueue(new ChatMessage(1L, "user", "druga"));
+        while (jdbc.attempts.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        // Flusher i dalje ne dolazi do baze; batch koji drži upisuje shutdown() iz ove niti
+        writeBehind.shutdown();
+        writeBehind = null;
+
+        assertEquals(List.of("prva", "druga"), jdbc.writtenMessages());
+    }
+
+    private ChatMessageWriteBehind start() {
+        return new ChatMessageWriteBehind(jdbc, true, 10, 50, 10, 100, 10_000);
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (jdbc.written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, jdbc.written.size());
+    }
+
+    private void awaitDropped(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!Long.valueOf(count).equals(writeBehind.stats().get("dropped")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, writeBehind.stats().get("dropped"));
+    }
+
+    /**
+     * Baza u memoriji: prvih {@code transientFailures} upisa (i svi upisi iz flusher niti dok je
+     * {@code flusherCutOff}) padaju sa timeout-om, a batch-eve koje izabere {@code failWith} baza odbija.
+     */
+    private static final class FakeJdbc extends JdbcTemplate {
+
+        private final AtomicLong ids = new AtomicLong();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger transientFailures = new AtomicInteger();
+        private final List<ChatMessage> written = new CopyOnWriteArrayList<>();
+        private volatile Predicate<List<ChatMessage>> failWith;
+        private volatile boolean flusherCutOff;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+            List<T> reserved = new ArrayList<>();
+            for (int i = 0; i < (Integer) args[0]; i++) {
+                reserved.add((T) Long.valueOf(ids.incrementAndGet()));
+            }
+            return reserved;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            List<ChatMessage> rows = new ArrayList<>();
+            for (int i = 0; i < args.length; i += 5) {
+                ChatMessage message = new ChatMessage((Long) args[i + 1], (String) args[i + 2], (String) args[i + 3]);
+                message.setId((Long) args[i]);
+                rows.add(message);
+            }
+            attempts.incrementAndGet();
+            boolean cutOff = flusherCutOff && Thread.currentThread().getName().equals("chat-write-behind");
+            if (cutOff || transientFailures.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                throw new QueryTimeoutException("baza ne odgovara");
+            }
+            Predicate<List<ChatMessage>> failure = failWith;
+            if (failure != null && failure.test(rows)) {
+                throw new DataIntegrityViolationException("odbijeno");
+            }
+            written.addAll(rows);
+            return rows.size();
+        }
+
+        private List<String> writtenMessages() {
+            return written.stream().map(ChatMessage::getMessage).toList();
+        }
+    }
+}
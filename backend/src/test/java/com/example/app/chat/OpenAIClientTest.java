@@ -0,0 +1,306 @@
+package com.example.app.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * OpenAIClient protiv lokalnog stub servera: bulkhead, single-flight i circuit breaker
+ * pod sporim upstream-om i talasom 429 odgovora, i latency politika (hedge, fallback).
+ */
+class OpenAIClientTest {
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private OpenAIStubServer stub;
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (stub != null) {
+            stub.close();
+        }
+    }
+
+    @Test
+    void bulkheadCapsUpstreamConcurrencyAndRejectsOverflow() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.ok("ok", 500));
+        Settings settings = new Settings();
+        settings.maxConcurrent = 2;
+        settings.maxQueued = 1;
+        settings.queueTimeoutMillis = 200;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        List<Future<ChatCompletion>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            String question = "pitanje " + i;
+            results.add(callers.submit(() -> client.complete(messages("prompt", question))));
+        }
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (Future<ChatCompletion> result : results) {
+            try {
+                assertThat(result.get(10, TimeUnit.SECONDS).getContent()).isEqualTo("ok");
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(OpenAIUnavailableException.class);
+                rejected++;
+            }
+        }
+        assertThat(stub.peakInFlight()).isLessThanOrEqualTo(2);
+        assertThat(succeeded).isGreaterThanOrEqualTo(2);
+        assertThat(rejected).isGreaterThanOrEqualTo(1);
+        assertThat(succeeded + rejected).isEqualTo(6);
+        assertThat(client.stats().get("available")).isEqualTo(2);
+    }
+
+    @Test
+    void singleFlightSharesOneUpstreamCallForIdenticalRequests() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.ok("odgovor", 400));
+        OpenAIClient client = new Settings().build(stub.baseUrl());
+
+        List<Future<ChatCompletion>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(callers.submit(() -> client.complete(messages("prompt", "isto pitanje"))));
+        }
+
+        int withUsage = 0;
+        for (Future<ChatCompletion> result : results) {
+            ChatCompletion completion = result.get(10, TimeUnit.SECONDS);
+            assertThat(completion.getContent()).isEqualTo("odgovor");
+            if (completion.getUsage() != null) {
+                withUsage++;
+            }
+        }
+        assertThat(stub.calls()).isEqualTo(1);
+        // Samo vođa plaća tokene; ostali dobijaju deljen rezultat bez usage-a
+        assertThat(withUsage).isEqualTo(1);
+    }
+
+    @Test
+    void singleFlightDoesNotShareAcrossDifferentPrompts() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.ok("odgovor", 400));
+        OpenAIClient client = new Settings().build(stub.baseUrl());
+
+        // Isto pitanje, različit personalizovan prompt - ne sme da se deli odgovor
+        Future<ChatCompletion> ana = callers.submit(() -> client.complete(messages("Korisnik se zove Ana.", "koliko vode")));
+        Future<ChatCompletion> marko = callers.submit(() -> client.complete(messages("Korisnik se zove Marko.", "koliko vode")));
+        ana.get(10, TimeUnit.SECONDS);
+        marko.get(10, TimeUnit.SECONDS);
+
+        assertThat(stub.calls()).isEqualTo(2);
+    }
+
+    @Test
+    void breakerOpensAfter429StormAndFailsFast() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.status(429));
+        Settings settings = new Settings();
+        settings.breakerFailureThreshold = 3;
+        settings.breakerOpenSeconds = 30;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        for (int i = 0; i < 3; i++) {
+            String question = "pitanje " + i;
+            assertThatThrownBy(() -> client.complete(messages("prompt", question)))
+                .isInstanceOf(WebClientResponseException.TooManyRequests.class);
+        }
+        assertThat(client.stats().get("circuitOpen")).isEqualTo(true);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.complete(messages("prompt", "još jedno")))
+            .isInstanceOf(OpenAIUnavailableException.class);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+        // Otvoren breaker ne šalje ništa upstream-u
+        assertThat(stub.calls()).isEqualTo(3);
+    }
+
+    @Test
+    void halfOpenAdmitsSingleTrialAndClosesOnSuccess() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.status(503));
+        Settings settings = new Settings();
+        settings.breakerFailureThreshold = 1;
+        // open-seconds=0: breaker odmah prelazi u half-open
+        settings.breakerOpenSeconds = 0;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        assertThatThrownBy(() -> client.complete(messages("prompt", "pada")))
+            .isInstanceOf(WebClientResponseException.ServiceUnavailable.class);
+
+        stub.respondWith(request -> OpenAIStubServer.Response.ok("oporavljen", 500));
+        Future<ChatCompletion> trial = callers.submit(() -> client.complete(messages("prompt", "proba")));
+        awaitCalls(2);
+
+        // Dok proba traje, ostali zahtevi se odbijaju bez poziva upstream-u
+        assertThatThrownBy(() -> client.complete(messages("prompt", "drugi")))
+            .isInstanceOf(OpenAIUnavailableException.class);
+        assertThat(trial.get(10, TimeUnit.SECONDS).getContent()).isEqualTo("oporavljen");
+
+        assertThat(client.complete(messages("prompt", "posle probe")).getContent()).isEqualTo("oporavljen");
+        assertThat(client.stats().get("circuitOpen")).isEqualTo(false);
+        assertThat(stub.calls()).isEqualTo(3);
+    }
+
+    @Test
+    void hedgeFiresAfterDelayAndFasterResponseWins() throws Exception {
+        AtomicInteger attempt = new AtomicInteger();
+        // Prvi pokušaj visi 3 s, hedge odgovara odmah
+        stub = new OpenAIStubServer(request -> attempt.getAndIncrement() == 0
+            ? OpenAIStubServer.Response.ok("spor", 3000)
+            : OpenAIStubServer.Response.ok("hedge", 0));
+        Settings settings = new Settings();
+        settings.hedgeEnabled = true;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        long start = System.nanoTime();
+        ChatCompletion completion = client.complete(messages("prompt", "pitanje"));
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(completion.getContent()).isEqualTo("hedge");
+        assertThat(millis).isLessThan(2000);
+        assertThat(client.stats().get("hedges")).isEqualTo(1L);
+        assertThat(stub.calls()).isEqualTo(2);
+        // Gubitnik je otkazan, a oba mesta u bulkhead-u su vraćena (hedge svoje pušta asinhrono)
+        awaitAvailable(client, settings.maxConcurrent);
+    }
+
+    @Test
+    void hedgeIsSkippedWhenBulkheadIsFull() throws Exception {
+        stub = new OpenAIStubServer(request -> OpenAIStubServer.Response.ok("ok", 600));
+        Settings settings = new Settings();
+        settings.hedgeEnabled = true;
+        settings.maxConcurrent = 1;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        assertThat(client.complete(messages("prompt", "pitanje")).getContent()).isEqualTo("ok");
+
+        // Hedge bi udvostručio upstream konkurentnost preko max-concurrent
+        assertThat(stub.calls()).isEqualTo(1);
+        assertThat(stub.peakInFlight()).isEqualTo(1);
+        assertThat(client.stats().get("hedges")).isEqualTo(0L);
+        assertThat(client.stats().get("hedgesSkipped")).isEqualTo(1L);
+        assertThat(client.stats().get("available")).isEqualTo(1);
+    }
+
+    @Test
+    void fallbackModelAnswersWhenPrimaryReturns5xx() throws Exception {
+        stub = new OpenAIStubServer(request -> "primary".equals(request.model)
+            ? OpenAIStubServer.Response.status(503)
+            : OpenAIStubServer.Response.ok("rezervni", 0));
+        Settings settings = new Settings();
+        settings.fallbackModel = "backup";
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        assertThat(client.complete(messages("prompt", "pitanje")).getContent()).isEqualTo("rezervni");
+        assertThat(client.stats().get("fallbacks")).isEqualTo(1L);
+        assertThat(stub.requests()).extracting(request -> request.model).containsExactly("primary", "backup");
+    }
+
+    @Test
+    void fallbackModelAnswersWhenPrimaryExceedsAttemptTimeout() throws Exception {
+        stub = new OpenAIStubServer(request -> "primary".equals(request.model)
+            ? OpenAIStubServer.Response.ok("prekasno", 3000)
+            : OpenAIStubServer.Response.ok("rezervni", 0));
+        Settings settings = new Settings();
+        settings.fallbackModel = "backup";
+        settings.attemptTimeoutMillis = 300;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        long start = System.nanoTime();
+        assertThat(client.complete(messages("prompt", "pitanje")).getContent()).isEqualTo("rezervni");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+    }
+
+    @Test
+    void cancelledStreamDoesNotReleaseAnotherCallsHalfOpenTrial() throws Exception {
+        stub = new OpenAIStubServer(request -> {
+            if (request.stream) {
+                return OpenAIStubServer.Response.stream("delta", 5000);
+            }
+            if (request.content.equals("pada")) {
+                return OpenAIStubServer.Response.status(503);
+            }
+            return OpenAIStubServer.Response.ok("ok", "proba".equals(request.content) ? 800 : 0);
+        });
+        Settings settings = new Settings();
+        settings.breakerFailureThreshold = 1;
+        settings.breakerOpenSeconds = 0;
+        OpenAIClient client = settings.build(stub.baseUrl());
+
+        // Stream krene dok je breaker zatvoren, pa nije probni poziv
+        Disposable stream = client.stream(messages("prompt", "stream"), usage -> { }).subscribe();
+        awaitCalls(1);
+
+        assertThatThrownBy(() -> client.complete(messages("prompt", "pada")))
+            .isInstanceOf(WebClientResponseException.ServiceUnavailable.class);
+        Future<ChatCompletion> trial = callers.submit(() -> client.complete(messages("prompt", "proba")));
+        awaitCalls(3);
+
+        // Korisnik zatvori tab: otkazan stream ne sme da pusti tuđu probu
+        stream.dispose();
+        assertThatThrownBy(() -> client.complete(messages("prompt", "drugi")))
+            .isInstanceOf(OpenAIUnavailableException.class);
+        assertThat(trial.get(10, TimeUnit.SECONDS).getContent()).isEqualTo("ok");
+        assertThat(stub.calls()).isEqualTo(3);
+    }
+
+    private static void awaitAvailable(OpenAIClient client, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(expected).equals(client.stats().get("available")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(client.stats().get("available")).isEqualTo(expected);
+    }
+
+    private void awaitCalls(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stub.calls() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(stub.calls()).isGreaterThanOrEqualTo(expected);
+    }
+
+    static List<Map<String, String>> messages(String systemPrompt, String question) {
+        return List.of(
+            Map.of("role", "system", "content", systemPrompt),
+            Map.of("role", "user", "content", question));
+    }
+
+    // Podešavanja klijenta; podrazumevano bez hedge-a i fallback-a, da testovi budu deterministični
+    static final class Settings {
+        String model = "primary";
+        String fallbackModel = "";
+        int maxConcurrent = 8;
+        int maxQueued = 32;
+        long queueTimeoutMillis = 5000;
+        int breakerFailureThreshold = 5;
+        long breakerOpenSeconds = 30;
+        long attemptTimeoutMillis = 5000;
+        long primaryBudgetMillis = 8000;
+        long streamIdleTimeoutMillis = 5000;
+        boolean hedgeEnabled = false;
+        long hedgeMinDelayMillis = 100;
+        long hedgeMaxDelayMillis = 100;
+
+        OpenAIClient build(String baseUrl) {
+            return new OpenAIClient(new ObjectMapper(), "test-key", baseUrl, model, "", fallbackModel,
+                maxConcurrent, maxQueued, queueTimeoutMillis, breakerFailureThreshold, breakerOpenSeconds,
+                attemptTimeoutMillis, primaryBudgetMillis, streamIdleTimeoutMillis,
+                hedgeEnabled, hedgeMinDelayMillis, hedgeMaxDelayMillis);
+        }
+    }
+}
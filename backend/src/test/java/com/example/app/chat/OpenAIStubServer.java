@@ -0,0 +1,177 @@
+package com.example.app.chat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lokalni HTTP stub za OpenAI /chat/completions. Ponašanje (kašnjenje, status, telo) određuje
+ * {@link Responder} po zahtevu; server broji pozive i najveći broj istovremenih zahteva.
+ */
+final class OpenAIStubServer implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+    private volatile Responder responder;
+
+    OpenAIStubServer(Responder responder) throws IOException {
+        this.responder = responder;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/chat/completions", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void respondWith(Responder responder) {
+        this.responder = responder;
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    List<Request> requests() {
+        return requests;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int now = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(now, Math::max);
+        try {
+            JsonNode body = JSON.readTree(exchange.getRequestBody());
+            Request request = new Request(body.path("model").asText(), lastContent(body), body.path("stream").asBoolean(false));
+            requests.add(request);
+            calls.incrementAndGet();
+            Response response = responder.respond(request);
+            if (response.delayMillis > 0) {
+                Thread.sleep(response.delayMillis);
+            }
+            response.headers.forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+            if (request.stream && response.status == 200) {
+                writeStream(exchange, response);
+                return;
+            }
+            byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Klijent je otkazao zahtev (hedge gubitnik, otkazan stream)
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    // SSE: jedan delta chunk, pa stream ostaje otvoren streamHoldMillis pre [DONE]
+    private static void writeStream(HttpExchange exchange, Response response) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            String chunk = JSON.writeValueAsString(Map.of("choices", List.of(Map.of("delta", Map.of("content", response.content)))));
+            out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(response.streamHoldMillis);
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String lastContent(JsonNode body) {
+        JsonNode messages = body.path("messages");
+        return messages.size() == 0 ? "" : messages.get(messages.size() - 1).path("content").asText();
+    }
+
+    @FunctionalInterface
+    interface Responder {
+        Response respond(Request request);
+    }
+
+    static final class Request {
+        final String model;
+        final String content;
+        final boolean stream;
+
+        Request(String model, String content, boolean stream) {
+            this.model = model;
+            this.content = content;
+            this.stream = stream;
+        }
+    }
+
+    static final class Response {
+        final int status;
+        final String body;
+        final String content;
+        final long delayMillis;
+        final long streamHoldMillis;
+        final Map<String, String> headers;
+
+        private Response(int status, String body, String content, long delayMillis, long streamHoldMillis, Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.content = content;
+            this.delayMillis = delayMillis;
+            this.streamHoldMillis = streamHoldMillis;
+            this.headers = headers;
+        }
+
+        static Response ok(String content, long delayMillis) {
+            try {
+                String body = JSON.writeValueAsString(Map.of(
+                    "choices", List.of(Map.of("message", Map.of("role", "assistant", "content", content))),
+                    "usage", Map.of("prompt_tokens", 10, "completion_tokens", 5)));
+                return new Response(200, body, content, delayMillis, 0, Map.of());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static Response stream(String content, long holdMillis) {
+            return new Response(200, "", content, 0, holdMillis, Map.of());
+        }
+
+        static Response status(int status) {
+            return new Response(status, "{\"error\":{\"message\":\"stub\"}}", null, 0, 0, Map.of());
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.app.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * EmailOutboxWorker protiv pravog SMTP servera (GreenMail). Tabela email_outbox je u memoriji
+ * ({@link OutboxTable}), jer se preuzimanje oslanja na PostgreSQL {@code UPDATE ... RETURNING}.
+ */
+class EmailOutboxWorkerTest {
+
+    private static final String RECIPIENT = "korisnik@example.com";
+
+    private final OutboxTable outbox = new OutboxTable();
+    private GreenMail smtp;
+    private JavaMailSenderImpl mailSender;
+    private EmailOutboxWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        smtp = new GreenMail(new ServerSetup(0, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        smtp.start();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(smtp.getSmtp().getPort());
+        worker = new EmailOutboxWorker(outbox, mock(EmailOutboxRepository.class), mailSender, "no-reply@biozen.rs", "BioZen Tracker",
+            1, 10, 3, 1000, 60_000, 120_000, 60_000, 7);
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+        smtp.stop();
+    }
+
+    @Test
+    void pendingMessageIsDeliveredAndMarkedSent() throws Exception {
+        long id = outbox.insert(RECIPIENT, "Resetovanje lozinke", "<p>Zdravo</p>");
+
+        worker.poll();
+
+        await(() -> "SENT".equals(outbox.row(id).status));
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("Resetovanje lozinke", received[0].getSubject());
+        assertEquals(RECIPIENT, received[0].getAllRecipients()[0].toString());
+        assertNotNull(outbox.row(id).sentAt);
+        assertEquals(1, outbox.row(id).attempts);
+    }
+
+    @Test
+    void messageIsRetriedAfterSmtpFailure() throws Exception {
+        mailSender.setPort(closedPort());
+        long id = outbox.insert(RECIPIENT, "Resetovanje lozinke", "<p>Zdravo</p>");
+
+        worker.poll();
+
+        await(() -> outbox.row(id).lastError != null);
+        OutboxTable.Row failed = outbox.row(id);
+        assertEquals("PENDING", failed.status);
+        assertEquals(1, failed.attempts);
+        assertTrue(failed.nextAttemptAt.isAfter(Instant.now()), "novi pokušaj treba da bude odložen");
+        assertEquals(0, smtp.getReceivedMessages().length);
+
+        // Poll pre isteka backoff-a ne preuzima poruku
+        worker.poll();
+        assertEquals(1, outbox.row(id).attempts);
+
+        // SMTP server je ponovo dostupan i backoff je istekao
+        mailSender.setPort(smtp.getSmtp().getPort());
+        failed.nextAttemptAt = Instant.now();
+        worker.poll();
+
+        await(() -> "SENT".equals(outbox.row(id).status));
+        assertEquals(2, outbox.row(id).attempts);
+        assertEquals(1, smtp.getReceivedMessages().length);
+        assertEquals(1L, worker.stats().get("retried"));
+        assertEquals(1L, worker.stats().get("sent"));
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean(), "uslov nije ispunjen za 10s");
+    }
+
+    /**
+     * Tabela email_outbox u memoriji: razume upite koje EmailOutboxWorker šalje (preuzimanje,
+     * SENT, novi pokušaj, FAILED) i ništa više.
+     */
+    private static final class OutboxTable extends JdbcTemplate {
+
+        private final Map<Long, Row> rows = new ConcurrentHashMap<>();
+        private long nextId = 1;
+
+        synchronized long insert(String recipient, String subject, String htmlBody) {
+            Row row = new Row(nextId++, recipient, subject, htmlBody);
+            rows.put(row.id, row);
+            return row.id;
+        }
+
+        Row row(long id) {
+            return rows.get(id);
+        }
+
+        @Override
+        public synchronized <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            if (!sql.startsWith("UPDATE email_outbox SET attempts = attempts + 1")) {
+                throw new IllegalArgumentException("Neočekivan upit: " + sql);
+            }
+            Instant lease = ((Timestamp) args[0]).toInstant();
+            Instant now = ((Timestamp) args[1]).toInstant();
+            int limit = (Integer) args[2];
+            List<T> claimed = new ArrayList<>();
+            for (Row row : rows.values()) {
+                if (claimed.size() < limit && "PENDING".equals(row.status) && !row.nextAttemptAt.isAfter(now)) {
+                    row.attempts++;
+                    row.nextAttemptAt = lease;
+                    try {
+                        claimed.add(rowMapper.mapRow(row.resultSet(), claimed.size()));
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return claimed;
+        }
+
+        @Override
+        public synchronized int update(String sql, Object... args) {
+            if (sql.contains("status = 'SENT', sent_at")) {
+                Row row = rows.get((Long) args[1]);
+                row.status = "SENT";
+                row.sentAt = ((Timestamp) args[0]).toInstant();
+                row.lastError = null;
+            } else if (sql.contains("status = 'FAILED'")) {
+                Row row = rows.get((Long) args[1]);
+                row.status = "FAILED";
+                row.lastError = (String) args[0];
+            } else if (sql.startsWith("UPDATE email_outbox SET next_attempt_at")) {
+                Row row = rows.get((Long) args[2]);
+                row.nextAttemptAt = ((Timestamp) args[0]).toInstant();
+                row.lastError = (String) args[1];
+            } else {
+                throw new IllegalArgumentException("Neočekivan upit: " + sql);
+            }
+            return 1;
+        }
+
+        static final class Row {
+            final long id;
+            final String recipient;
+            final String subject;
+            final String htmlBody;
+            volatile String status = "PENDING";
+            volatile int attempts;
+            volatile Instant nextAttemptAt = Instant.now();
+            volatile Instant sentAt;
+            volatile String lastError;
+
+            Row(long id, String recipient, String subject, String htmlBody) {
+                this.id = id;
+                this.recipient = recipient;
+                this.subject = subject;
+                this.htmlBody = htmlBody;
+            }
+
+            ResultSet resultSet() throws SQLException {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong("id")).thenReturn(id);
+                when(rs.getString("recipient")).thenReturn(recipient);
+                when(rs.getString("subject")).thenReturn(subject);
+                when(rs.getString("html_body")).thenReturn(htmlBody);
+                when(rs.getInt("attempts")).thenReturn(attempts);
+                return rs;
+            }
+        }
+    }
+}
@@ -3,6 +3,44 @@ import { LineChart, Line, XAxis, YAxis, CartesianGrid, Tooltip, Legend, Responsi
 import html2canvas from "html2canvas";
 import "./brand.css";
 
+// Access token kratko traje; na 401 se jednom osveži preko refresh tokena i zahtev ponovi.
+// Istovremeni zahtevi dele isto osvežavanje.
+let refreshInFlight = null;
+
+function refreshAccessToken() {
+  const refreshToken = localStorage.getItem("refreshToken");
+  if (!refreshToken) return Promise.resolve(null);
+  if (!refreshInFlight) {
+    refreshInFlight = fetch("/api/auth/refresh", {
+      method: "POST",
+      headers: { "Content-Type": "application/json" },
+      body: JSON.stringify({ refreshToken }),
+    })
+      .then(async (res) => {
+        if (!res.ok) return null;
+        const data = await res.json();
+        localStorage.setItem("token", data.token);
+        localStorage.setItem("refreshToken", data.refreshToken);
+        return data.token;
+      })
+      .catch(() => null)
+      .finally(() => {
+        refreshInFlight = null;
+      });
+  }
+  return refreshInFlight;
+}
+
+async function authFetch(url, options = {}) {
+  const res = await fetch(url, options);
+  if (res.status !== 401 || !options.headers || !options.headers.Authorization) {
+    return res;
+  }
+  const token = await refreshAccessToken();
+  if (!token) return res;
+  return fetch(url, { ...options, headers: { ...options.headers, Authorization: `Bearer ${token}` } });
+}
+
 export default function App() {
   const [mode, setMode] = useState("login"); // login | register | forgot-password | reset-password
   const [email, setEmail] = useState("");
@@ -91,7 +129,7 @@ export default function App() {
     }
     
     try {
-      const res = await fetch("/api/me", {
+      const res = await authFetch("/api/me", {
         headers: { Authorization: `Bearer ${token}` },
       });
       const data = await res.json();
@@ -142,6 +180,7 @@ export default function App() {
       if (!res.ok) throw new Error(data.message || "Greška");
       if (data.token) {
         localStorage.setItem("token", data.token);
+        if (data.refreshToken) localStorage.setItem("refreshToken", data.refreshToken);
         setIsLoggedIn(true);
         await loadUserData();
       }
@@ -206,7 +245,7 @@ export default function App() {
     if (!token) return;
 
     try {
-      const res = await fetch("/api/me", {
+      const res = await authFetch("/api/me", {
         method: "PUT",
         headers: {
           "Content-Type": "application/json",
@@ -571,7 +610,10 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
   const [chatMessages, setChatMessages] = useState([]);
   const [chatInput, setChatInput] = useState("");
   const [sendingMessage, setSendingMessage] = useState(false);
+  const [chatHistoryCursor, setChatHistoryCursor] = useState(null);
+  const [loadingOlderChat, setLoadingOlderChat] = useState(false);
   const chatMessagesEndRef = useRef(null);
+  const chatMessagesContainerRef = useRef(null);
   const chartRef = useRef(null);
   const isMobile = isMobileProp !== undefined ? isMobileProp : window.innerWidth <= 768;
 
@@ -642,12 +684,14 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     if (!token) return;
 
     try {
-      const res = await fetch("/api/chat/history", {
+      // Samo najnovija stranica; starije poruke se učitavaju kada korisnik skroluje na vrh
+      const res = await authFetch("/api/chat/history?limit=50", {
         headers: { Authorization: `Bearer ${token}` },
       });
       if (res.ok) {
         const data = await res.json();
-        setChatMessages(data);
+        setChatMessages(data.messages);
+        setChatHistoryCursor(data.nextBefore);
         // Scroll to bottom after loading
         setTimeout(() => {
           if (chatMessagesEndRef.current) {
@@ -660,6 +704,35 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     }
   }
 
+  async function loadOlderChatMessages() {
+    const token = localStorage.getItem("token");
+    if (!token || !chatHistoryCursor || loadingOlderChat) return;
+
+    setLoadingOlderChat(true);
+    try {
+      const res = await authFetch(`/api/chat/history?limit=50&before=${encodeURIComponent(chatHistoryCursor)}`, {
+        headers: { Authorization: `Bearer ${token}` },
+      });
+      if (res.ok) {
+        const data = await res.json();
+        const container = chatMessagesContainerRef.current;
+        const previousHeight = container ? container.scrollHeight : 0;
+        setChatMessages(prev => [...data.messages, ...prev]);
+        setChatHistoryCursor(data.nextBefore);
+        // Zadrži poziciju skrola posle dodavanja starijih poruka iznad
+        requestAnimationFrame(() => {
+          if (container) {
+            container.scrollTop += container.scrollHeight - previousHeight;
+          }
+        });
+      }
+    } catch (e) {
+      console.error("Greška pri učitavanju starijih poruka:", e);
+    } finally {
+      setLoadingOlderChat(false);
+    }
+  }
+
   async function sendChatMessage(e) {
     e.preventDefault();
     const token = localStorage.getItem("token");
@@ -678,47 +751,91 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     };
     setChatMessages(prev => [...prev, tempUserMessage]);
 
+    // Placeholder za odgovor asistenta koji se puni kako stižu tokeni
+    const tempAssistantId = tempUserMessage.id + 1;
+    let assistantStarted = false;
+    const appendDelta = (content) => {
+      setChatMessages(prev => {
+        if (!assistantStarted) {
+          assistantStarted = true;
+          return [...prev, {
+            id: tempAssistantId,
+            role: "assistant",
+            message: content,
+            createdAt: new Date().toISOString(),
+          }];
+        }
+        return prev.map(msg => msg.id === tempAssistantId
+          ? { ...msg, message: msg.message + content }
+          : msg);
+      });
+      if (chatMessagesEndRef.current) {
+        chatMessagesEndRef.current.scrollIntoView({ behavior: "smooth" });
+      }
+    };
+
     try {
-      const res = await fetch("/api/chat", {
+      const res = await authFetch("/api/chat/stream", {
         method: "POST",
         headers: {
           "Content-Type": "application/json",
+          Accept: "text/event-stream",
           Authorization: `Bearer ${token}`,
         },
         body: JSON.stringify({ message: userMessage }),
       });
 
-      const data = await res.json();
-      if (res.ok) {
-        // Zameni temp poruku sa stvarnom i dodaj odgovor
-        setChatMessages(prev => {
-          const filtered = prev.filter(msg => msg.id !== tempUserMessage.id);
-          return [...filtered, {
-            id: tempUserMessage.id,
-            role: "user",
-            message: userMessage,
-            createdAt: new Date().toISOString(),
-          }, {
-            id: data.id || Date.now() + 1,
-            role: "assistant",
-            message: data.message,
-            createdAt: new Date().toISOString(),
-          }];
-        });
+      // SSE parser: događaji su odvojeni praznim redom, svaki ima "event:" i "data:" linije
+      const reader = res.body.getReader();
+      const decoder = new TextDecoder();
+      let buffer = "";
+      let errorMessage = res.ok ? null : "Greška pri slanju poruke";
+      let finished = false;
+      while (!finished) {
+        const { value, done } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+        let boundary;
+        while ((boundary = buffer.indexOf("\n\n")) !== -1) {
+          const rawEvent = buffer.slice(0, boundary);
+          buffer = buffer.slice(boundary + 2);
+          let eventName = "message";
+          let data = "";
+          for (const line of rawEvent.split("\n")) {
+            if (line.startsWith("event:")) eventName = line.slice(6).trim();
+            else if (line.startsWith("data:")) data += line.slice(5);
+          }
+          if (!data) continue;
+          const payload = JSON.parse(data);
+          if (eventName === "delta") {
+            appendDelta(payload.content);
+          } else if (eventName === "done") {
+            setChatMessages(prev => prev.map(msg => msg.id === tempAssistantId
+              ? { ...msg, id: payload.id || tempAssistantId, message: payload.message }
+              : msg));
+            finished = true;
+          } else if (eventName === "error") {
+            errorMessage = payload.message || "Greška pri slanju poruke";
+            finished = true;
+          }
+        }
+      }
+
+      if (errorMessage) {
+        // Ukloni temp poruke i prikaži grešku
+        setChatMessages(prev => prev.filter(msg => msg.id !== tempUserMessage.id && msg.id !== tempAssistantId));
+        alert(errorMessage);
+      } else {
         // Scroll to bottom
         setTimeout(() => {
           if (chatMessagesEndRef.current) {
             chatMessagesEndRef.current.scrollIntoView({ behavior: "smooth" });
           }
         }, 100);
-      } else {
-        // Ukloni temp poruku i prikaži grešku
-        setChatMessages(prev => prev.filter(msg => msg.id !== tempUserMessage.id));
-        alert(data.message || "Greška pri slanju poruke");
       }
     } catch (e) {
       console.error("Greška pri slanju poruke:", e);
-      setChatMessages(prev => prev.filter(msg => msg.id !== tempUserMessage.id));
+      setChatMessages(prev => prev.filter(msg => msg.id !== tempUserMessage.id && msg.id !== tempAssistantId));
       alert("Greška pri slanju poruke");
     } finally {
       setSendingMessage(false);
@@ -754,6 +871,20 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     }
   }
 
+  // Lista blogova ne sadrži content; pun post se učitava tek kada se otvori
+  async function openBlog(blog) {
+    setSelectedBlog(blog);
+    try {
+      const res = await fetch(`/api/blog/${encodeURIComponent(blog.slug)}`);
+      if (res.ok) {
+        const fullBlog = await res.json();
+        setSelectedBlog((current) => (current && current.id === fullBlog.id ? fullBlog : current));
+      }
+    } catch (e) {
+      console.error("Greška pri učitavanju bloga:", e);
+    }
+  }
+
   // PWA Install prompt
   useEffect(() => {
     // Proveri da li je iOS
@@ -799,7 +930,7 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     if (!token) return;
 
     try {
-      const res = await fetch("/api/measurements", {
+      const res = await authFetch("/api/measurements", {
         headers: { Authorization: `Bearer ${token}` },
       });
       if (res.ok) {
@@ -818,7 +949,7 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
 
     setMeasurementMessage("");
     try {
-      const res = await fetch("/api/measurements", {
+      const res = await authFetch("/api/measurements", {
         method: "POST",
         headers: {
           "Content-Type": "application/json",
@@ -854,7 +985,7 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
     }
 
     try {
-      const res = await fetch(`/api/measurements/${id}`, {
+      const res = await authFetch(`/api/measurements/${id}`, {
         method: "DELETE",
         headers: { Authorization: `Bearer ${token}` },
       });
@@ -2918,7 +3049,7 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
               {blogs && Array.isArray(blogs) && blogs.map((blog) => (
                 <div
                   key={blog.id}
-                  onClick={() => setSelectedBlog(blog)}
+                  onClick={() => openBlog(blog)}
                   style={{
                     background: "#fff",
                     borderRadius: 12,
@@ -3022,14 +3153,31 @@ function Dashboard({ me, onUpdate, onLogout, activeTab, setActiveTab, message, i
           </div>
 
           {/* Chat Messages */}
-          <div style={{
-            flex: 1,
-            overflowY: "auto",
-            padding: isMobile ? "16px" : "20px",
-            display: "flex",
-            flexDirection: "column",
-            gap: 12,
-          }}>
+          <div
+            ref={chatMessagesContainerRef}
+            onScroll={(e) => {
+              if (e.currentTarget.scrollTop < 40) {
+                loadOlderChatMessages();
+              }
+            }}
+            style={{
+              flex: 1,
+              overflowY: "auto",
+              padding: isMobile ? "16px" : "20px",
+              display: "flex",
+              flexDirection: "column",
+              gap: 12,
+            }}
+          >
+            {loadingOlderChat && (
+              <div style={{
+                textAlign: "center",
+                fontSize: 13,
+                color: "var(--brand-text-light)",
+              }}>
+                Učitavanje starijih poruka...
+              </div>
+            )}
             {chatMessages.length === 0 ? (
               <div style={{
                 flex: 1,
@@ -4048,7 +4196,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
     if (!token) return;
 
     try {
-      const res = await fetch("/api/admin/users/stats", {
+      const res = await authFetch("/api/admin/users/stats", {
         headers: { Authorization: `Bearer ${token}` },
       });
       const data = await res.json();
@@ -4076,7 +4224,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
       const url = `/api/admin/users?page=${currentPage}&size=20${searchTerm ? `&search=${encodeURIComponent(searchTerm)}` : ""}`;
       console.log("Loading users from:", url);
       console.log("Authorization header:", `Bearer ${token.substring(0, 20)}...`);
-      const res = await fetch(url, {
+      const res = await authFetch(url, {
         headers: { Authorization: `Bearer ${token}` },
       });
       console.log("Response status:", res.status);
@@ -4113,7 +4261,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
 
     setLoading(true);
     try {
-      const res = await fetch(`/api/admin/blog?page=${currentPage}&size=20`, {
+      const res = await authFetch(`/api/admin/blog?page=${currentPage}&size=20`, {
         headers: { Authorization: `Bearer ${token}` },
       });
       const data = await res.json();
@@ -4128,6 +4276,24 @@ function AdminPanel({ me, onLogout, isMobile }) {
     }
   }
 
+  // Lista ne sadrži content; za izmenu se učitava ceo post (null ako ne uspe)
+  async function loadFullBlog(id) {
+    const token = localStorage.getItem("token");
+    if (!token) return null;
+
+    try {
+      const res = await authFetch(`/api/admin/blog/${id}`, {
+        headers: { Authorization: `Bearer ${token}` },
+      });
+      if (res.ok) {
+        return await res.json();
+      }
+    } catch (e) {
+      console.error("Greška pri učitavanju bloga:", e);
+    }
+    return null;
+  }
+
   async function handleImageUpload(file) {
     const token = localStorage.getItem("token");
     if (!token) return;
@@ -4137,7 +4303,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
       const formData = new FormData();
       formData.append("file", file);
 
-      const res = await fetch("/api/admin/upload/image", {
+      const res = await authFetch("/api/admin/upload/image", {
         method: "POST",
         headers: {
           Authorization: `Bearer ${token}`,
@@ -4183,7 +4349,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
       const url = editingBlog ? `/api/admin/blog/${editingBlog.id}` : "/api/admin/blog";
       const method = editingBlog ? "PUT" : "POST";
       
-      const res = await fetch(url, {
+      const res = await authFetch(url, {
         method,
         headers: {
           Authorization: `Bearer ${token}`,
@@ -4216,7 +4382,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
     if (!confirm("Da li ste sigurni da želite da obrišete ovaj blog?")) return;
 
     try {
-      const res = await fetch(`/api/admin/blog/${id}`, {
+      const res = await authFetch(`/api/admin/blog/${id}`, {
         method: "DELETE",
         headers: { Authorization: `Bearer ${token}` },
       });
@@ -4234,7 +4400,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
     if (!token) return;
 
     try {
-      const res = await fetch(`/api/admin/blog/${id}/publish`, {
+      const res = await authFetch(`/api/admin/blog/${id}/publish`, {
         method: "PUT",
         headers: { Authorization: `Bearer ${token}` },
       });
@@ -4568,7 +4734,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
                   }}>
                     <h3 style={{ margin: "0 0 10px 0", color: "var(--brand-text)" }}>{blog.title}</h3>
                     <p style={{ color: "var(--brand-text-light)", fontSize: 14, margin: "0 0 15px 0" }}>
-                      {blog.excerpt || blog.content?.substring(0, 100) + "..."}
+                      {blog.excerpt}
                     </p>
                     <div style={{ display: "flex", gap: 10, flexWrap: "wrap" }}>
                       <span style={{
@@ -4582,18 +4748,23 @@ function AdminPanel({ me, onLogout, isMobile }) {
                         {blog.status === "PUBLISHED" ? "Objavljen" : "Nacrt"}
                       </span>
                       <button
-                        onClick={() => {
-                          setEditingBlog(blog);
+                        onClick={async () => {
+                          const fullBlog = await loadFullBlog(blog.id);
+                          if (!fullBlog) {
+                            alert("Greška pri učitavanju bloga");
+                            return;
+                          }
+                          setEditingBlog(fullBlog);
                           setBlogForm({
-                            title: blog.title || "",
-                            content: blog.content || "",
-                            excerpt: blog.excerpt || "",
-                            featuredImage: blog.featuredImage || "",
-                            status: blog.status || "DRAFT",
+                            title: fullBlog.title || "",
+                            content: fullBlog.content || "",
+                            excerpt: fullBlog.excerpt || "",
+                            featuredImage: fullBlog.featuredImage || "",
+                            status: fullBlog.status || "DRAFT",
                           });
-                          if (blog.featuredImage && (blog.featuredImage.startsWith("http://") || blog.featuredImage.startsWith("https://"))) {
+                          if (fullBlog.featuredImage && (fullBlog.featuredImage.startsWith("http://") || fullBlog.featuredImage.startsWith("https://"))) {
                             setImageInputMode("url");
-                            setImageUrl(blog.featuredImage);
+                            setImageUrl(fullBlog.featuredImage);
                           } else {
                             setImageInputMode("upload");
                             setImageUrl("");
@@ -4602,7 +4773,7 @@ function AdminPanel({ me, onLogout, isMobile }) {
                           // Set content in editor after a brief delay to ensure DOM is ready
                           setTimeout(() => {
                             if (contentEditorRef.current) {
-                              contentEditorRef.current.innerHTML = blog.content || "";
+                              contentEditorRef.current.innerHTML = fullBlog.content || "";
                             }
                           }, 100);
                         }}